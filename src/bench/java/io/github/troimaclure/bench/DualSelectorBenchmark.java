@@ -0,0 +1,91 @@
+package io.github.troimaclure.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.apache.commons.lang3.tuple.Pair;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.github.troimaclure.Category;
+import io.github.troimaclure.Product;
+import io.github.troimaclure.Q;
+
+/**
+ * DualSelector joins against hand written java.util.stream baselines, the right
+ * side holds a tenth of the left side.
+ *
+ * @author ajosse
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgs = { "-Xms2g", "-Xmx2g" })
+public class DualSelectorBenchmark {
+
+    // on(BiPredicate) is a nested loop, bigger sizes do not end in a sane time
+    @Param({ "1000", "10000" })
+    int size;
+
+    List<Product> products;
+    List<Category> categories;
+
+    @Setup
+    public void setUp() {
+        var random = new Random(42);
+        var categoryCount = Math.max(1, size / 10);
+        categories = new ArrayList<>(categoryCount);
+        for (int i = 0; i < categoryCount; i++) {
+            categories.add(new Category("category " + i, i, random.nextInt()));
+        }
+        products = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            products.add(new Product("product " + i, random.nextInt(categoryCount), i));
+        }
+    }
+
+    @Benchmark
+    public List<Pair<Product, Category>> onPredicate() {
+        return Q.join(products, categories).on((p, c) -> p.getId_category() == c.getId()).toList();
+    }
+
+    @Benchmark
+    public List<Pair<Product, Category>> onKeys() {
+        return Q.join(products, categories).on(Product::getId_category, Category::getId).toList();
+    }
+
+    @Benchmark
+    public List<Pair<Product, Category>> onStream() {
+        var table = categories.stream().collect(Collectors.groupingBy(Category::getId));
+        return products.stream()
+                .flatMap(p -> table.getOrDefault(p.getId_category(), List.of()).stream().map(c -> Pair.of(p, c)))
+                .collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public List<Pair<Category, List<Product>>> groupByLeft() {
+        return Q.join(categories, products).on(Category::getId, Product::getId_category).groupByLeft(Category::getId)
+                .toList();
+    }
+
+    @Benchmark
+    public List<Pair<Category, List<Product>>> groupByLeftStream() {
+        var table = products.stream().collect(Collectors.groupingBy(Product::getId_category));
+        return categories.stream().filter(c -> table.containsKey(c.getId()))
+                .map(c -> Pair.of(c, table.get(c.getId()))).collect(Collectors.toList());
+    }
+}
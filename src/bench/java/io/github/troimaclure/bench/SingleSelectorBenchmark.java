@@ -0,0 +1,133 @@
+package io.github.troimaclure.bench;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.github.troimaclure.Product;
+import io.github.troimaclure.Q;
+import io.github.troimaclure.queries.CompiledQuery;
+
+/**
+ * SingleSelector operators against hand written java.util.stream baselines.
+ *
+ * @author ajosse
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgs = { "-Xms2g", "-Xmx2g" })
+public class SingleSelectorBenchmark {
+
+    @Param({ "1000", "100000", "1000000" })
+    int size;
+
+    List<Product> products;
+
+    static final CompiledQuery<Product, String> QUERY = Q.<Product>query().where(e -> e.getId_category() < 50)
+            .orderBy(Product::getName).where(e -> e.getId() % 2 == 0).select(Product::getName).compile();
+
+    @Setup
+    public void setUp() {
+        // fixed seed : every run works on the same data
+        var random = new Random(42);
+        products = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            products.add(new Product("product " + random.nextInt(size), random.nextInt(100), i));
+        }
+    }
+
+    @Benchmark
+    public List<Product> where() {
+        return Q.from(products).where(e -> e.getId_category() < 50).toList();
+    }
+
+    @Benchmark
+    public List<Product> whereStream() {
+        return products.stream().filter(e -> e.getId_category() < 50).collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public List<String> select() {
+        return Q.from(products).select(Product::getName).toList();
+    }
+
+    @Benchmark
+    public List<String> selectStream() {
+        return products.stream().map(Product::getName).collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public List<Product> orderBy() {
+        return Q.from(products).orderBy(Product::getName).toList();
+    }
+
+    @Benchmark
+    public List<Product> orderByStream() {
+        return products.stream().sorted(Comparator.comparing(Product::getName)).collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public List<Entry<Integer, List<Product>>> groupBy() {
+        return Q.from(products).groupBy(Product::getId_category).toList();
+    }
+
+    @Benchmark
+    public List<Entry<Integer, List<Product>>> groupByStream() {
+        return new ArrayList<>(
+                products.stream().collect(Collectors.groupingBy(Product::getId_category)).entrySet());
+    }
+
+    @Benchmark
+    public List<Product> distinct() {
+        return Q.from(products).distinct(Product::getName).toList();
+    }
+
+    @Benchmark
+    public List<Product> distinctStream() {
+        var seen = ConcurrentHashMap.newKeySet();
+        return products.stream().filter(e -> seen.add(e.getName())).collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public Map<Integer, Product> toMap() {
+        return Q.from(products).toMap(Product::getId, Function.identity());
+    }
+
+    @Benchmark
+    public Map<Integer, Product> toMapStream() {
+        return products.stream().collect(Collectors.toMap(Product::getId, Function.identity()));
+    }
+
+    @Benchmark
+    public List<String> chain() {
+        return Q.from(products).where(e -> e.getId_category() < 50).orderBy(Product::getName)
+                .where(e -> e.getId() % 2 == 0).select(Product::getName).toList();
+    }
+
+    @Benchmark
+    public List<String> compiledQuery() {
+        return QUERY.apply(products);
+    }
+}
@@ -1,10 +1,31 @@
 package io.github.troimaclure;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
+import io.github.troimaclure.exceptions.QException;
+import io.github.troimaclure.indexes.HashIndex;
+import io.github.troimaclure.indexes.SortedIndex;
+import io.github.troimaclure.queries.Query;
+import io.github.troimaclure.selectors.ColumnSelector;
+import io.github.troimaclure.selectors.DoubleSelector;
 import io.github.troimaclure.selectors.DualSelector;
+import io.github.troimaclure.selectors.FlowSelector;
+import io.github.troimaclure.selectors.IntSelector;
+import io.github.troimaclure.selectors.LongSelector;
 import io.github.troimaclure.selectors.SingleSelector;
+import io.github.troimaclure.selectors.StarJoin;
 
 /**
  *
@@ -63,11 +84,206 @@ public class Q {
      * @return {@code SingleSelector<T>}
      */
     public static <T> SingleSelector<T> from(T[] array) {
-        var list = new ArrayList<T>();
-        for (T a : array) {
-            list.add(a);
-        }
-        return from(list);
+        return from(new ArrayList<>(Arrays.asList(array)));
+    }
+
+    /**
+     * <h3>Usage</h3>
+     * <p>
+     * Start Q functional chaining over the array without copying it
+     * </p>
+     * <b>!!Operators never write into the array, but the list returned by
+     * toList() may be the array itself.!!</b>
+     * 
+     * <pre>
+     * {@code
+     * var array = new String[] { "a", "b" };
+     * Q.view(array).where(e -> e.equals("a"));
+     * }
+     * </pre>
+     * 
+     * @param <T>
+     * @param array
+     * @return {@code SingleSelector<T>}
+     */
+    public static <T> SingleSelector<T> view(T[] array) {
+        return from(Arrays.asList(array));
+    }
+
+    /**
+     * <h3>Usage</h3>
+     * <p>
+     * Start Q functional chaining over any Iterable (Set, Queue...), lists are
+     * used as is, other sources are read lazily and only copied into a list when
+     * an operator needs one (toList, join, toArray).
+     * </p>
+     * 
+     * <pre>
+     * {@code
+     * Q.from(new HashSet<>(list)).where(e -> e.getId() > 10).any(e -> e.getId() == 12);
+     * }
+     * </pre>
+     * 
+     * @param <T>
+     * @param iterable
+     * @return {@code SingleSelector<T>}
+     */
+    public static <T> SingleSelector<T> from(Iterable<T> iterable) {
+        if (iterable instanceof List)
+            return from((List<T>) iterable);
+        if (iterable instanceof Collection)
+            return new SingleSelector<>(((Collection<T>) iterable)::stream);
+        return new SingleSelector<>(() -> StreamSupport.stream(iterable.spliterator(), false));
+    }
+
+    /**
+     * <h3>Usage</h3>
+     * <p>
+     * Start Q functional chaining over an iterator, read lazily.
+     * </p>
+     * <b>!!The iterator can only be read once : call toList() before running
+     * several terminal operators.!!</b>
+     * 
+     * @param <T>
+     * @param iterator
+     * @return {@code SingleSelector<T>}
+     */
+    public static <T> SingleSelector<T> from(Iterator<T> iterator) {
+        return from(StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED), false));
+    }
+
+    /**
+     * <h3>Usage</h3>
+     * <p>
+     * Start Q functional chaining over a stream, read lazily.
+     * </p>
+     * <b>!!The stream can only be read once : call toList() before running
+     * several terminal operators.!!</b>
+     * 
+     * @param <T>
+     * @param stream
+     * @return {@code SingleSelector<T>}
+     */
+    public static <T> SingleSelector<T> from(Stream<T> stream) {
+        var consumed = new AtomicBoolean();
+        return new SingleSelector<>(() -> {
+            if (consumed.getAndSet(true))
+                throw new QException("The source stream has already been read, call toList() to keep it",
+                        "SOURCE_EX");
+            return stream;
+        });
+    }
+
+    /**
+     * <h3>Usage</h3>
+     * 
+     * <pre>{@code
+     * Q.from(eventPublisher).where(Event::isValid).chunk(500).toPublisher().subscribe(bulkWriter);
+     * }</pre>
+     * <p>
+     * Start Q functional chaining over a reactive stream, elements are
+     * processed as they are published and downstream demand is honored.
+     * </p>
+     * 
+     * @param <T>
+     * @param publisher
+     * @return {@code FlowSelector<T>}
+     */
+    public static <T> FlowSelector<T> from(Flow.Publisher<T> publisher) {
+        return new FlowSelector<>(publisher);
+    }
+
+    /**
+     * <h3>Usage</h3>
+     * <p>
+     * Start Q functional chaining over an int array, without copying nor boxing
+     * </p>
+     * 
+     * @param array
+     * @return {@code IntSelector}
+     */
+    public static IntSelector from(int[] array) {
+        return new IntSelector(array);
+    }
+
+    public static LongSelector from(long[] array) {
+        return new LongSelector(array);
+    }
+
+    public static DoubleSelector from(double[] array) {
+        return new DoubleSelector(array);
+    }
+
+    /**
+     * <h3>Usage</h3>
+     * <p>
+     * Build a hash index once, for O(1) lookups and joins on the same list
+     * </p>
+     * 
+     * <pre>
+     * {@code
+     * var byId = Q.index(categories, Category::getId);
+     * byId.firstOrDefault(2);
+     * Q.join(products, categories).on(Product::getId_category, byId);
+     * }
+     * </pre>
+     * 
+     * @param <K>
+     * @param <T>
+     * @param list
+     * @param keyExtractor
+     * @return {@code HashIndex<K, T>}
+     */
+    public static <K, T> HashIndex<K, T> index(List<T> list, Function<? super T, ? extends K> keyExtractor) {
+        return new HashIndex<>(list, keyExtractor);
+    }
+
+    /**
+     * <h3>Usage</h3>
+     * <p>
+     * Build a sorted index once, for O(log n) lookups and range queries
+     * </p>
+     * 
+     * <pre>
+     * {@code
+     * Q.sortedIndex(products, Product::getId).between(10, 20).toList();
+     * }
+     * </pre>
+     * 
+     * @param <K>
+     * @param <T>
+     * @param list
+     * @param keyExtractor
+     * @return {@code SortedIndex<K, T>}
+     */
+    public static <K extends Comparable<? super K>, T> SortedIndex<K, T> sortedIndex(List<T> list,
+            Function<? super T, ? extends K> keyExtractor) {
+        return new SortedIndex<>(list, keyExtractor, Comparator.naturalOrder());
+    }
+
+    public static <K, T> SortedIndex<K, T> sortedIndex(List<T> list, Function<? super T, ? extends K> keyExtractor,
+            Comparator<? super K> comparator) {
+        return new SortedIndex<>(list, keyExtractor, comparator);
+    }
+
+    /**
+     * <h3>Usage</h3>
+     * <p>
+     * Define a chain once and compile it into a reusable, thread-safe plan
+     * </p>
+     * 
+     * <pre>
+     * {@code
+     * var plan = Q.<Product>query().where(e -> e.getId() > 10).select(Product::getName).compile();
+     * List<String> names = plan.apply(products);
+     * }
+     * </pre>
+     * 
+     * @param <T>
+     * @return {@code Query<T, T>}
+     */
+    public static <T> Query<T, T> query() {
+        return new Query<>();
     }
 
     /**
@@ -88,4 +304,46 @@ public class Q {
     public static <T, U> DualSelector<T, U> join(List<T> t, List<U> u) {
         return new DualSelector<>(t, u);
     }
-}
\ No newline at end of file
+
+    /**
+     * <h3>Usage</h3>
+     * 
+     * <pre>{@code
+     * var star = Q.star(sales);
+     * var product = star.dim(products, Sale::getProductId, Product::getId);
+     * var store = star.dim(stores, Sale::getStoreId, Store::getId);
+     * star.select(row -> row.get(product).getName() + "@" + row.get(store).getCity()).toList();
+     * }</pre>
+     * <p>
+     * Join a fact list with several dimension lists in a single probe pass, see
+     * {@link StarJoin}.
+     * </p>
+     * 
+     * @param <F>
+     * @param facts
+     * @return {@code StarJoin<F>}
+     */
+    public static <F> StarJoin<F> star(List<F> facts) {
+        return new StarJoin<>(facts);
+    }
+
+    /**
+     * <h3>Usage</h3>
+     * 
+     * <pre>{@code
+     * Q.columns(products).intCol("category", Product::getId_category).intCol("id", Product::getId)
+     *         .whereInt("category", c -> c < 3).sumInt("id");
+     * }</pre>
+     * <p>
+     * Columnar view of the list, declared fields are read once into primitive
+     * arrays, see {@link ColumnSelector}.
+     * </p>
+     * 
+     * @param <T>
+     * @param list
+     * @return {@code ColumnSelector<T>}
+     */
+    public static <T> ColumnSelector<T> columns(List<T> list) {
+        return new ColumnSelector<>(list);
+    }
+}
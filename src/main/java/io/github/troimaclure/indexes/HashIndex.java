@@ -0,0 +1,79 @@
+package io.github.troimaclure.indexes;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import io.github.troimaclure.selectors.SingleSelector;
+
+/**
+ * <h3>Usage</h3>
+ * 
+ * <pre>{@code
+ * var byCategory = Q.index(products, Product::getId_category);
+ * byCategory.firstOrDefault(2);
+ * Q.join(categories, products).on(Category::getId, byCategory);
+ * }</pre>
+ * <p>
+ * Hash index built once over a list, lookups by key are O(1). The index is
+ * never modified after construction and can be shared between threads for
+ * reads.
+ * </p>
+ *
+ * @author ajosse
+ */
+public class HashIndex<K, T> {
+    private final Map<K, List<T>> table;
+
+    public HashIndex(List<T> list, Function<? super T, ? extends K> keyExtractor) {
+        var table = new HashMap<K, List<T>>();
+        for (T t : list) {
+            table.computeIfAbsent(keyExtractor.apply(t), k -> new ArrayList<>(1)).add(t);
+        }
+        for (var entry : table.entrySet()) {
+            entry.setValue(Collections.unmodifiableList(entry.getValue()));
+        }
+        this.table = Collections.unmodifiableMap(table);
+    }
+
+    /**
+     * @param key
+     * @return elements with this key, in list order (empty when none)
+     */
+    public List<T> get(K key) {
+        return table.getOrDefault(key, List.of());
+    }
+
+    public T firstOrDefault(K key, T def) {
+        var values = table.get(key);
+        return values == null ? def : values.get(0);
+    }
+
+    public T firstOrDefault(K key) {
+        return firstOrDefault(key, null);
+    }
+
+    public boolean contains(K key) {
+        return table.containsKey(key);
+    }
+
+    public SingleSelector<T> where(K key) {
+        return new SingleSelector<>(get(key));
+    }
+
+    public SingleSelector<T> whereIn(Collection<? extends K> keys) {
+        var list = new ArrayList<T>();
+        for (K key : keys) {
+            list.addAll(get(key));
+        }
+        return new SingleSelector<>(list);
+    }
+
+    public int size() {
+        return table.size();
+    }
+}
@@ -0,0 +1,142 @@
+package io.github.troimaclure.indexes;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Function;
+
+import org.apache.commons.lang3.tuple.Pair;
+
+import io.github.troimaclure.selectors.SingleSelector;
+
+/**
+ * <h3>Usage</h3>
+ * 
+ * <pre>{@code
+ * var byId = Q.sortedIndex(products, Product::getId);
+ * byId.between(10, 20).select(Product::getName).toList();
+ * }</pre>
+ * <p>
+ * Sorted index built once over a list, lookups and range queries are
+ * O(log n). Elements with the same key keep their list order. The index is
+ * never modified after construction and can be shared between threads for
+ * reads.
+ * </p>
+ *
+ * @author ajosse
+ */
+public class SortedIndex<K, T> {
+    private final List<K> keys;
+    private final List<T> values;
+    private final Comparator<? super K> comparator;
+
+    public SortedIndex(List<T> list, Function<? super T, ? extends K> keyExtractor, Comparator<? super K> comparator) {
+        var entries = new ArrayList<Pair<K, T>>(list.size());
+        for (T t : list) {
+            entries.add(Pair.of(keyExtractor.apply(t), t));
+        }
+        // stable sort, keys are extracted once
+        entries.sort((a, b) -> comparator.compare(a.getLeft(), b.getLeft()));
+        var keys = new ArrayList<K>(entries.size());
+        var values = new ArrayList<T>(entries.size());
+        for (var entry : entries) {
+            keys.add(entry.getLeft());
+            values.add(entry.getRight());
+        }
+        this.keys = Collections.unmodifiableList(keys);
+        this.values = Collections.unmodifiableList(values);
+        this.comparator = comparator;
+    }
+
+    /**
+     * @param key
+     * @return index of the first element whose key is not lower than key
+     */
+    public int lowerBound(K key) {
+        int low = 0;
+        int high = keys.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (comparator.compare(keys.get(middle), key) < 0)
+                low = middle + 1;
+            else
+                high = middle;
+        }
+        return low;
+    }
+
+    /**
+     * @param key
+     * @return index of the first element whose key is greater than key
+     */
+    public int upperBound(K key) {
+        int low = 0;
+        int high = keys.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (comparator.compare(keys.get(middle), key) <= 0)
+                low = middle + 1;
+            else
+                high = middle;
+        }
+        return low;
+    }
+
+    /**
+     * @param from inclusive
+     * @param to   exclusive
+     * @return elements with from &lt;= key &lt; to, in key order
+     */
+    public SingleSelector<T> between(K from, K to) {
+        int start = lowerBound(from);
+        int end = Math.max(start, lowerBound(to));
+        return new SingleSelector<>(values.subList(start, end));
+    }
+
+    public SingleSelector<T> where(K key) {
+        return new SingleSelector<>(values.subList(lowerBound(key), upperBound(key)));
+    }
+
+    public T firstOrDefault(K key, T def) {
+        int index = lowerBound(key);
+        if (index < keys.size() && comparator.compare(keys.get(index), key) == 0)
+            return values.get(index);
+        return def;
+    }
+
+    public T firstOrDefault(K key) {
+        return firstOrDefault(key, null);
+    }
+
+    public boolean contains(K key) {
+        int index = lowerBound(key);
+        return index < keys.size() && comparator.compare(keys.get(index), key) == 0;
+    }
+
+    /**
+     * @param key
+     * @return last element whose key is lower or equal to key, null when none
+     */
+    public T floor(K key) {
+        int index = upperBound(key) - 1;
+        return index < 0 ? null : values.get(index);
+    }
+
+    /**
+     * @param key
+     * @return first element whose key is greater or equal to key, null when none
+     */
+    public T ceiling(K key) {
+        int index = lowerBound(key);
+        return index < values.size() ? values.get(index) : null;
+    }
+
+    public SingleSelector<T> toSelector() {
+        return new SingleSelector<>(values);
+    }
+
+    public int size() {
+        return values.size();
+    }
+}
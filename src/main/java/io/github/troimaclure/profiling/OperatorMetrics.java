@@ -0,0 +1,24 @@
+package io.github.troimaclure.profiling;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+/**
+ * What one operator of a Q chain did : rows read, rows produced, time and
+ * allocation. -1 stands for unknown (rows of a not yet materialized source,
+ * time of an operator fused in a lazy pass, allocation on JVMs that do not
+ * track it).
+ *
+ * @author ajosse
+ */
+@Getter
+@ToString
+@RequiredArgsConstructor
+public class OperatorMetrics {
+    private final String operator;
+    private final long rowsIn;
+    private final long rowsOut;
+    private final long elapsedNanos;
+    private final long allocatedBytes;
+}
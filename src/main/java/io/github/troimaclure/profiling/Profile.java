@@ -0,0 +1,104 @@
+package io.github.troimaclure.profiling;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Array;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Supplier;
+
+/**
+ * Metrics recorded by a profiled selector, see
+ * {@code SingleSelector.profile()}.
+ *
+ * @author ajosse
+ */
+public class Profile {
+    private static final com.sun.management.ThreadMXBean THREADS = threads();
+
+    private final List<OperatorMetrics> metrics = new CopyOnWriteArrayList<>();
+    private final List<ProfileListener> listeners = new CopyOnWriteArrayList<>();
+
+    public Profile listen(ProfileListener listener) {
+        listeners.add(listener);
+        return this;
+    }
+
+    public List<OperatorMetrics> getMetrics() {
+        return metrics;
+    }
+
+    public void record(OperatorMetrics operatorMetrics) {
+        metrics.add(operatorMetrics);
+        for (var listener : listeners) {
+            listener.onOperator(operatorMetrics);
+        }
+    }
+
+    /**
+     * <p>
+     * Run {@code body} and record its metrics, the rows of the lazy operators
+     * fused in the same pass are recorded first.
+     * </p>
+     * 
+     * @param <R>
+     * @param operator
+     * @param rowsIn
+     * @param body
+     * @param fused
+     * @return body result
+     */
+    public <R> R measure(String operator, long rowsIn, Supplier<R> body, List<RowCounter> fused) {
+        var allocated = allocatedBytes();
+        var start = System.nanoTime();
+        var result = body.get();
+        var elapsed = System.nanoTime() - start;
+        if (allocated >= 0)
+            allocated = allocatedBytes() - allocated;
+        for (var counter : fused) {
+            record(counter.drain());
+        }
+        record(new OperatorMetrics(operator, rowsIn, rows(result), elapsed, allocated));
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        var builder = new StringBuilder();
+        builder.append(String.format("%-20s %12s %12s %14s %14s%n", "operator", "rows in", "rows out", "nanos",
+                "bytes"));
+        for (var m : metrics) {
+            builder.append(String.format("%-20s %12d %12d %14d %14d%n", m.getOperator(), m.getRowsIn(),
+                    m.getRowsOut(), m.getElapsedNanos(), m.getAllocatedBytes()));
+        }
+        return builder.toString();
+    }
+
+    private static long rows(Object result) {
+        if (result instanceof Collection)
+            return ((Collection<?>) result).size();
+        if (result instanceof Map)
+            return ((Map<?, ?>) result).size();
+        if (result != null && result.getClass().isArray())
+            return Array.getLength(result);
+        return result == null ? 0 : 1;
+    }
+
+    // bytes allocated by the current thread, -1 when the JVM does not track them
+    private static long allocatedBytes() {
+        if (THREADS == null)
+            return -1;
+        return THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static com.sun.management.ThreadMXBean threads() {
+        var threads = ManagementFactory.getThreadMXBean();
+        if (!(threads instanceof com.sun.management.ThreadMXBean))
+            return null;
+        var sunThreads = (com.sun.management.ThreadMXBean) threads;
+        if (!sunThreads.isThreadAllocatedMemorySupported() || !sunThreads.isThreadAllocatedMemoryEnabled())
+            return null;
+        return sunThreads;
+    }
+}
@@ -0,0 +1,12 @@
+package io.github.troimaclure.profiling;
+
+/**
+ * Receives the metrics of every operator run by a profiled selector, e.g. to
+ * forward them to a metrics registry.
+ *
+ * @author ajosse
+ */
+@FunctionalInterface
+public interface ProfileListener {
+    void onOperator(OperatorMetrics metrics);
+}
@@ -0,0 +1,33 @@
+package io.github.troimaclure.profiling;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Counts the rows going through an operator of a lazy plan, the operator is
+ * fused with the others so only its rows are known.
+ *
+ * @author ajosse
+ */
+@RequiredArgsConstructor
+public class RowCounter {
+    @Getter
+    private final String operator;
+    private final LongAdder rowsIn = new LongAdder();
+    private final LongAdder rowsOut = new LongAdder();
+
+    public <T> Stream<T> in(Stream<T> stream) {
+        return stream.peek(e -> rowsIn.increment());
+    }
+
+    public <T> Stream<T> out(Stream<T> stream) {
+        return stream.peek(e -> rowsOut.increment());
+    }
+
+    OperatorMetrics drain() {
+        return new OperatorMetrics(operator, rowsIn.sumThenReset(), rowsOut.sumThenReset(), -1, -1);
+    }
+}
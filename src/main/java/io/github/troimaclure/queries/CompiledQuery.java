@@ -0,0 +1,91 @@
+package io.github.troimaclure.queries;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import io.github.troimaclure.exceptions.QException;
+import io.github.troimaclure.selectors.SingleSelector;
+import io.github.troimaclure.selectors.Sorting;
+
+/**
+ * Optimized plan of a {@link Query}. Immutable : {@link #apply(List)} can be
+ * called from several threads at once, each call runs the plan as a single
+ * fused pass over the given list.
+ *
+ * @author ajosse
+ */
+public class CompiledQuery<T, R> {
+    private final List<Step> steps;
+    private final Function<Stream<Object>, Stream<Object>> pipeline;
+
+    CompiledQuery(List<Step> steps) {
+        this.steps = steps;
+        Function<Stream<Object>, Stream<Object>> pipeline = Function.identity();
+        for (var step : steps) {
+            pipeline = pipeline.andThen(operator(step));
+        }
+        this.pipeline = pipeline;
+    }
+
+    public List<R> apply(List<T> list) {
+        return run(list).collect(Collectors.toList());
+    }
+
+    /**
+     * <p>
+     * Lazy selector over the plan result, to keep chaining with terminal
+     * operators (any, toMap, sumLong...).
+     * </p>
+     * 
+     * @param list
+     * @return {@code SingleSelector<R>}
+     */
+    public SingleSelector<R> from(List<T> list) {
+        return new SingleSelector<>(() -> run(list));
+    }
+
+    /**
+     * <p>
+     * Operators of the optimized plan, one per line.
+     * </p>
+     * 
+     * @return {@code String}
+     */
+    public String explain() {
+        return steps.stream().map(step -> step.name)
+                .collect(Collectors.joining(System.lineSeparator() + " -> ", "query" + System.lineSeparator() + " -> ", ""));
+    }
+
+    @SuppressWarnings("unchecked")
+    private Stream<R> run(List<T> list) {
+        return (Stream<R>) pipeline.apply((Stream<Object>) list.stream());
+    }
+
+    // state (distinct keys) is created on each call, never shared between calls
+    private static Function<Stream<Object>, Stream<Object>> operator(Step step) {
+        switch (step.kind) {
+        case WHERE:
+            return s -> s.filter(step.predicate);
+        case SELECT:
+            return s -> s.map(step.function);
+        case SORT:
+            return s -> s.sorted(step.comparator);
+        case TOP_K:
+            return s -> Sorting.topK(s, step.comparator, step.count).stream();
+        case DISTINCT:
+            return s -> {
+                var seen = new HashSet<>();
+                return s.filter(e -> seen.add(step.function.apply(e)));
+            };
+        case TAKE:
+            return s -> s.limit(step.count);
+        case SKIP:
+            return s -> s.skip(step.count);
+        default:
+            throw new QException("Unknown query step " + step.kind, "QUERY_EX");
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package io.github.troimaclure.queries;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+import io.github.troimaclure.queries.Step.Kind;
+
+/**
+ * Rule based rewriting of a query, every rule keeps the result of the query
+ * unchanged :
+ * <ul>
+ * <li>consecutive where are merged into one predicate</li>
+ * <li>a where is moved ahead of the sort before it (filtering commutes with a
+ * stable sort)</li>
+ * <li>a sort repeated with the same key is dropped, two consecutive sorts
+ * become a single sort by the last key then the first one</li>
+ * <li>a take right after a sort becomes a bounded heap top-K</li>
+ * </ul>
+ * A where is never moved ahead of a select, distinct, take or skip.
+ *
+ * @author ajosse
+ */
+final class Optimizer {
+
+    private Optimizer() {
+    }
+
+    static List<Step> optimize(List<Step> input) {
+        var steps = new ArrayList<>(input);
+        var changed = true;
+        while (changed) {
+            changed = false;
+            for (int i = 0; i + 1 < steps.size() && !changed; i++) {
+                var a = steps.get(i);
+                var b = steps.get(i + 1);
+                if (a.kind == Kind.WHERE && b.kind == Kind.WHERE) {
+                    steps.set(i, mergeWhere(a, b));
+                    steps.remove(i + 1);
+                    changed = true;
+                } else if (a.kind == Kind.SORT && b.kind == Kind.WHERE) {
+                    steps.set(i, b);
+                    steps.set(i + 1, a);
+                    changed = true;
+                } else if (a.kind == Kind.SORT && b.kind == Kind.SORT) {
+                    if (!a.sameSort(b))
+                        steps.set(i, Step.sort(b.name + ", " + a.name, null, null, false,
+                                b.comparator.thenComparing(a.comparator)));
+                    steps.remove(i + 1);
+                    changed = true;
+                }
+            }
+        }
+        for (int i = 0; i + 1 < steps.size(); i++) {
+            var a = steps.get(i);
+            var b = steps.get(i + 1);
+            if (a.kind == Kind.SORT && b.kind == Kind.TAKE) {
+                steps.set(i, Step.topK("take (top-K " + a.name + ")", a.comparator, b.count));
+                steps.remove(i + 1);
+            }
+        }
+        return steps;
+    }
+
+    private static Step mergeWhere(Step a, Step b) {
+        Predicate<Object> first = a.predicate;
+        Predicate<Object> second = b.predicate;
+        return Step.where(e -> first.test(e) && second.test(e), a.name + " & " + b.name);
+    }
+}
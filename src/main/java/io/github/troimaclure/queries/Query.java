@@ -0,0 +1,101 @@
+package io.github.troimaclure.queries;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+import io.github.troimaclure.exceptions.QException;
+
+/**
+ * <h3>Usage</h3>
+ * 
+ * <pre>{@code
+ * CompiledQuery<Product, String> names = Q.<Product>query().where(e -> e.getId() > 10)
+ *         .orderBy(Product::getName).select(Product::getName).compile();
+ * names.apply(products);
+ * }</pre>
+ * <p>
+ * Defines a chain of operators once, {@link #compile()} optimizes it into a
+ * reusable thread-safe plan. Every method returns a new query, a query can be
+ * shared and extended.
+ * </p>
+ *
+ * @author ajosse
+ */
+public class Query<T, R> {
+    private final List<Step> steps;
+
+    public Query() {
+        this(List.of());
+    }
+
+    private Query(List<Step> steps) {
+        this.steps = steps;
+    }
+
+    @SuppressWarnings("unchecked")
+    public Query<T, R> where(Predicate<? super R> p) {
+        return then(Step.where(e -> p.test((R) e), "where"));
+    }
+
+    @SuppressWarnings("unchecked")
+    public <K> Query<T, K> select(Function<? super R, ? extends K> func) {
+        return then(Step.select(e -> func.apply((R) e)));
+    }
+
+    public <U extends Comparable<? super U>> Query<T, R> orderBy(Function<? super R, ? extends U> keyExtractor) {
+        return sort("orderBy", keyExtractor, null, false);
+    }
+
+    public <U extends Comparable<? super U>> Query<T, R> orderBy(Function<? super R, ? extends U> keyExtractor,
+            Comparator<? super U> comparator) {
+        return sort("orderBy", keyExtractor, comparator, false);
+    }
+
+    public <U extends Comparable<? super U>> Query<T, R> orderByDesc(
+            Function<? super R, ? extends U> keyExtractor) {
+        return sort("orderByDesc", keyExtractor, null, true);
+    }
+
+    public <U extends Comparable<? super U>> Query<T, R> orderByDesc(Function<? super R, ? extends U> keyExtractor,
+            Comparator<? super U> comparator) {
+        return sort("orderByDesc", keyExtractor, comparator, true);
+    }
+
+    @SuppressWarnings("unchecked")
+    public Query<T, R> distinct(Function<? super R, ?> keyExtractor) {
+        return then(Step.distinct(e -> keyExtractor.apply((R) e)));
+    }
+
+    public Query<T, R> take(int n) {
+        if (n < 0)
+            throw new QException("take count must not be negative: " + n, "TAKE_EX");
+        return then(Step.take(n));
+    }
+
+    public Query<T, R> skip(int n) {
+        return then(Step.skip(n));
+    }
+
+    public CompiledQuery<T, R> compile() {
+        return new CompiledQuery<>(Optimizer.optimize(steps));
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private <U extends Comparable<? super U>> Query<T, R> sort(String name,
+            Function<? super R, ? extends U> keyExtractor, Comparator<? super U> comparator, boolean desc) {
+        Comparator<R> element = comparator == null ? Comparator.comparing(keyExtractor)
+                : Comparator.comparing(keyExtractor, comparator);
+        if (desc)
+            element = element.reversed();
+        return then(Step.sort(name, (Function) keyExtractor, (Comparator) comparator, desc, (Comparator) element));
+    }
+
+    private <K> Query<T, K> then(Step step) {
+        var next = new ArrayList<>(steps);
+        next.add(step);
+        return new Query<>(List.copyOf(next));
+    }
+}
@@ -0,0 +1,67 @@
+package io.github.troimaclure.queries;
+
+import java.util.Comparator;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * One operator of a query, untyped : the types are checked by {@link Query}.
+ *
+ * @author ajosse
+ */
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+final class Step {
+    enum Kind {
+        WHERE, SELECT, SORT, TOP_K, DISTINCT, TAKE, SKIP
+    }
+
+    final Kind kind;
+    final String name;
+    final Predicate<Object> predicate;
+    // projection for SELECT, key for DISTINCT and SORT
+    final Function<Object, Object> function;
+    // key comparator of a SORT, null for the natural order
+    final Comparator<Object> keyComparator;
+    final boolean desc;
+    // element comparator of SORT and TOP_K
+    final Comparator<Object> comparator;
+    final long count;
+
+    static Step where(Predicate<Object> predicate, String name) {
+        return new Step(Kind.WHERE, name, predicate, null, null, false, null, 0);
+    }
+
+    static Step select(Function<Object, Object> function) {
+        return new Step(Kind.SELECT, "select", null, function, null, false, null, 0);
+    }
+
+    static Step sort(String name, Function<Object, Object> keyExtractor, Comparator<Object> keyComparator,
+            boolean desc, Comparator<Object> comparator) {
+        return new Step(Kind.SORT, name, null, keyExtractor, keyComparator, desc, comparator, 0);
+    }
+
+    static Step topK(String name, Comparator<Object> comparator, long count) {
+        return new Step(Kind.TOP_K, name, null, null, null, false, comparator, count);
+    }
+
+    static Step distinct(Function<Object, Object> keyExtractor) {
+        return new Step(Kind.DISTINCT, "distinct", null, keyExtractor, null, false, null, 0);
+    }
+
+    static Step take(long count) {
+        return new Step(Kind.TAKE, "take", null, null, null, false, null, count);
+    }
+
+    static Step skip(long count) {
+        return new Step(Kind.SKIP, "skip", null, null, null, false, null, count);
+    }
+
+    // same key, same comparator, same direction : sorting twice changes nothing
+    boolean sameSort(Step other) {
+        return function != null && function == other.function && keyComparator == other.keyComparator
+                && desc == other.desc;
+    }
+}
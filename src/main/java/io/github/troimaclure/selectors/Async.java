@@ -0,0 +1,144 @@
+package io.github.troimaclure.selectors;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+import io.github.troimaclure.exceptions.QException;
+
+/**
+ * Bounded concurrency map used by selectAsync / foreachAsync: at most
+ * {@code maxConcurrency} calls run at the same time, results keep the input
+ * order, the first failure cancels (and interrupts) every call still running
+ * and is thrown by the caller.
+ *
+ * @author ajosse
+ */
+final class Async {
+    // Executors.newVirtualThreadPerTaskExecutor, null before Java 21
+    private static final Method VIRTUAL_THREADS = virtualThreads();
+
+    private Async() {
+    }
+
+    static <T, K> ArrayList<K> map(List<T> rows, Function<? super T, ? extends K> func, int maxConcurrency,
+            Executor executor) {
+        if (maxConcurrency < 1)
+            throw new QException("maxConcurrency must be positive", "ASYNC_EX");
+        var owned = executor == null ? defaultExecutor(maxConcurrency) : null;
+        try {
+            return run(rows, func, maxConcurrency, owned != null ? owned : executor);
+        } finally {
+            if (owned != null)
+                owned.shutdownNow();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T, K> ArrayList<K> run(List<T> rows, Function<? super T, ? extends K> func, int maxConcurrency,
+            Executor executor) {
+        var results = new Object[rows.size()];
+        var permits = new Semaphore(maxConcurrency);
+        var failure = new AtomicReference<Throwable>();
+        Set<FutureTask<?>> running = ConcurrentHashMap.newKeySet();
+        try {
+            for (int i = 0; i < rows.size(); i++) {
+                permits.acquire();
+                if (failure.get() != null) {
+                    permits.release();
+                    break;
+                }
+                int index = i;
+                var task = new FutureTask<Void>(() -> {
+                    results[index] = func.apply(rows.get(index));
+                    return null;
+                }) {
+                    @Override
+                    protected void done() {
+                        running.remove(this);
+                        if (!isCancelled() && failed(this, failure))
+                            cancelAll(running);
+                        permits.release();
+                    }
+                };
+                running.add(task);
+                try {
+                    executor.execute(task);
+                } catch (RejectedExecutionException e) {
+                    task.cancel(false);
+                    failure.compareAndSet(null, e);
+                    break;
+                }
+            }
+            // every permit is back once the calls still running are done
+            permits.acquire(maxConcurrency);
+        } catch (InterruptedException e) {
+            cancelAll(running);
+            Thread.currentThread().interrupt();
+            throw new QException("Interrupted while waiting for async calls", "ASYNC_EX");
+        }
+        var error = failure.get();
+        if (error instanceof RuntimeException)
+            throw (RuntimeException) error;
+        if (error instanceof Error)
+            throw (Error) error;
+        if (error != null)
+            throw new QException("Async call failed: " + error, "ASYNC_EX");
+        return new ArrayList<>((List<K>) Arrays.asList(results));
+    }
+
+    // keeps the first failure, true when this task failed
+    private static boolean failed(FutureTask<?> task, AtomicReference<Throwable> failure) {
+        try {
+            task.get();
+            return false;
+        } catch (ExecutionException e) {
+            failure.compareAndSet(null, e.getCause());
+            return true;
+        } catch (InterruptedException | CancellationException e) {
+            return false;
+        }
+    }
+
+    private static void cancelAll(Set<FutureTask<?>> running) {
+        for (var task : running) {
+            task.cancel(true);
+        }
+    }
+
+    private static ExecutorService defaultExecutor(int maxConcurrency) {
+        if (VIRTUAL_THREADS != null) {
+            try {
+                return (ExecutorService) VIRTUAL_THREADS.invoke(null);
+            } catch (ReflectiveOperationException e) {
+                // falls back to platform threads
+            }
+        }
+        return Executors.newFixedThreadPool(maxConcurrency, runnable -> {
+            var thread = new Thread(runnable, "q-async");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private static Method virtualThreads() {
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package io.github.troimaclure.selectors;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import io.github.troimaclure.exceptions.QException;
+
+/**
+ * Splits a stream into lists of at most {@code size} elements, pulled one
+ * batch at a time from the source so only the current batch is held.
+ *
+ * @author ajosse
+ */
+final class Batching {
+
+    private Batching() {
+    }
+
+    /**
+     * @param <T>
+     * @param stream
+     * @param size     max elements per batch
+     * @param maxNanos a batch is also closed once an element arrives this long
+     *                 after its first one, {@code Long.MAX_VALUE} for size only
+     * @return stream of batches, in order
+     */
+    static <T> Stream<List<T>> chunks(Stream<T> stream, int size, long maxNanos) {
+        if (size < 1)
+            throw new QException("Batch size must be positive", "BATCH_EX");
+        var source = stream.sequential().spliterator();
+        return StreamSupport.stream(new Spliterators.AbstractSpliterator<List<T>>(Long.MAX_VALUE,
+                Spliterator.ORDERED | Spliterator.NONNULL) {
+            @Override
+            public boolean tryAdvance(Consumer<? super List<T>> action) {
+                var batch = new ArrayList<T>(Math.min(size, 1024));
+                long[] started = { 0 };
+                while (batch.size() < size && source.tryAdvance(e -> {
+                    if (batch.isEmpty())
+                        started[0] = System.nanoTime();
+                    batch.add(e);
+                })) {
+                    if (maxNanos != Long.MAX_VALUE && System.nanoTime() - started[0] >= maxNanos)
+                        break;
+                }
+                if (batch.isEmpty())
+                    return false;
+                action.accept(batch);
+                return true;
+            }
+        }, false).onClose(stream::close);
+    }
+}
@@ -0,0 +1,423 @@
+package io.github.troimaclure.selectors;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalDouble;
+import java.util.OptionalInt;
+import java.util.OptionalLong;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.DoublePredicate;
+import java.util.function.IntPredicate;
+import java.util.function.IntToDoubleFunction;
+import java.util.function.LongPredicate;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+
+import io.github.troimaclure.exceptions.QException;
+
+/**
+ * <h3>Usage</h3>
+ * 
+ * <pre>{@code
+ * var frame = Q.columns(products).intCol("category", Product::getId_category).doubleCol("price", Product::getPrice);
+ * frame.whereDouble("price", p -> p > 10).sumDouble("price");
+ * frame.sumBy("category", "price");
+ * frame.whereInt("category", c -> c == 2).rows().toList();
+ * }</pre>
+ * <p>
+ * Columnar view of a list: each declared field is read once into a primitive
+ * array, then filters and aggregates run as plain loops over those arrays (no
+ * getter call, no boxing). Filters return a new view holding a selection
+ * vector (the positions of the rows still selected) over the same columns
+ * instead of copying rows, {@code frame} itself is left unchanged.
+ * {@link #rows()} maps the selection back to the original objects.
+ * </p>
+ *
+ * @author ajosse
+ */
+public class ColumnSelector<T> {
+    private final List<T> list;
+    // shared by every view of the list, a column declared on one is read by all
+    private final Map<String, int[]> ints;
+    private final Map<String, long[]> longs;
+    private final Map<String, double[]> doubles;
+    // positions of the selected rows in ascending order, null when all rows are
+    private final int[] selection;
+    private final int size;
+
+    public ColumnSelector(List<T> list) {
+        this.list = list;
+        this.ints = new HashMap<>();
+        this.longs = new HashMap<>();
+        this.doubles = new HashMap<>();
+        this.selection = null;
+        this.size = list.size();
+    }
+
+    private ColumnSelector(ColumnSelector<T> columns, int[] selection, int size) {
+        this.list = columns.list;
+        this.ints = columns.ints;
+        this.longs = columns.longs;
+        this.doubles = columns.doubles;
+        this.selection = selection;
+        this.size = size;
+    }
+
+    public ColumnSelector<T> intCol(String name, ToIntFunction<? super T> field) {
+        var values = new int[list.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = field.applyAsInt(list.get(i));
+        }
+        ints.put(name, values);
+        return this;
+    }
+
+    public ColumnSelector<T> longCol(String name, ToLongFunction<? super T> field) {
+        var values = new long[list.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = field.applyAsLong(list.get(i));
+        }
+        longs.put(name, values);
+        return this;
+    }
+
+    public ColumnSelector<T> doubleCol(String name, ToDoubleFunction<? super T> field) {
+        var values = new double[list.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = field.applyAsDouble(list.get(i));
+        }
+        doubles.put(name, values);
+        return this;
+    }
+
+    public ColumnSelector<T> whereInt(String column, IntPredicate p) {
+        var values = intColumn(column);
+        return narrow(i -> p.test(values[i]));
+    }
+
+    public ColumnSelector<T> whereLong(String column, LongPredicate p) {
+        var values = longColumn(column);
+        return narrow(i -> p.test(values[i]));
+    }
+
+    public ColumnSelector<T> whereDouble(String column, DoublePredicate p) {
+        var values = doubleColumn(column);
+        return narrow(i -> p.test(values[i]));
+    }
+
+    /**
+     * @return number of selected rows
+     */
+    public int count() {
+        return size;
+    }
+
+    public long sumInt(String column) {
+        var values = intColumn(column);
+        long sum = 0;
+        if (selection == null) {
+            for (int i = 0; i < size; i++) {
+                sum += values[i];
+            }
+        } else {
+            for (int k = 0; k < size; k++) {
+                sum += values[selection[k]];
+            }
+        }
+        return sum;
+    }
+
+    public long sumLong(String column) {
+        var values = longColumn(column);
+        long sum = 0;
+        if (selection == null) {
+            for (int i = 0; i < size; i++) {
+                sum += values[i];
+            }
+        } else {
+            for (int k = 0; k < size; k++) {
+                sum += values[selection[k]];
+            }
+        }
+        return sum;
+    }
+
+    public double sumDouble(String column) {
+        var values = doubleColumn(column);
+        double sum = 0;
+        if (selection == null) {
+            for (int i = 0; i < size; i++) {
+                sum += values[i];
+            }
+        } else {
+            for (int k = 0; k < size; k++) {
+                sum += values[selection[k]];
+            }
+        }
+        return sum;
+    }
+
+    public OptionalInt minInt(String column) {
+        var values = intColumn(column);
+        if (size == 0)
+            return OptionalInt.empty();
+        int min = Integer.MAX_VALUE;
+        for (int k = 0; k < size; k++) {
+            min = Math.min(min, values[position(k)]);
+        }
+        return OptionalInt.of(min);
+    }
+
+    public OptionalInt maxInt(String column) {
+        var values = intColumn(column);
+        if (size == 0)
+            return OptionalInt.empty();
+        int max = Integer.MIN_VALUE;
+        for (int k = 0; k < size; k++) {
+            max = Math.max(max, values[position(k)]);
+        }
+        return OptionalInt.of(max);
+    }
+
+    public OptionalLong minLong(String column) {
+        var values = longColumn(column);
+        if (size == 0)
+            return OptionalLong.empty();
+        long min = Long.MAX_VALUE;
+        for (int k = 0; k < size; k++) {
+            min = Math.min(min, values[position(k)]);
+        }
+        return OptionalLong.of(min);
+    }
+
+    public OptionalLong maxLong(String column) {
+        var values = longColumn(column);
+        if (size == 0)
+            return OptionalLong.empty();
+        long max = Long.MIN_VALUE;
+        for (int k = 0; k < size; k++) {
+            max = Math.max(max, values[position(k)]);
+        }
+        return OptionalLong.of(max);
+    }
+
+    public OptionalDouble minDouble(String column) {
+        var values = doubleColumn(column);
+        if (size == 0)
+            return OptionalDouble.empty();
+        double min = Double.POSITIVE_INFINITY;
+        for (int k = 0; k < size; k++) {
+            min = Math.min(min, values[position(k)]);
+        }
+        return OptionalDouble.of(min);
+    }
+
+    public OptionalDouble maxDouble(String column) {
+        var values = doubleColumn(column);
+        if (size == 0)
+            return OptionalDouble.empty();
+        double max = Double.NEGATIVE_INFINITY;
+        for (int k = 0; k < size; k++) {
+            max = Math.max(max, values[position(k)]);
+        }
+        return OptionalDouble.of(max);
+    }
+
+    /**
+     * <p>
+     * Number of selected rows per value of the int column {@code key}, by
+     * ascending key.
+     * </p>
+     * 
+     * @param key
+     * @return {@code Map<Integer, Long>}
+     */
+    public Map<Integer, Long> countBy(String key) {
+        var groups = groups(key);
+        var counts = new long[groups.keys.length];
+        for (int k = 0; k < size; k++) {
+            counts[groups.slots[k]]++;
+        }
+        var result = new LinkedHashMap<Integer, Long>();
+        for (int g = 0; g < counts.length; g++) {
+            result.put(groups.keys[g], counts[g]);
+        }
+        return result;
+    }
+
+    /**
+     * <p>
+     * Sum of the numeric column {@code value} per value of the int column
+     * {@code key}, by ascending key.
+     * </p>
+     * 
+     * @param key
+     * @param value
+     * @return {@code Map<Integer, Double>}
+     */
+    public Map<Integer, Double> sumBy(String key, String value) {
+        return aggregateBy(key, value, 0, Double::sum);
+    }
+
+    public Map<Integer, Double> minBy(String key, String value) {
+        return aggregateBy(key, value, Double.POSITIVE_INFINITY, Math::min);
+    }
+
+    public Map<Integer, Double> maxBy(String key, String value) {
+        return aggregateBy(key, value, Double.NEGATIVE_INFINITY, Math::max);
+    }
+
+    /**
+     * @return the selected rows, in list order
+     */
+    public SingleSelector<T> rows() {
+        var rows = new ArrayList<T>(size);
+        for (int k = 0; k < size; k++) {
+            rows.add(list.get(position(k)));
+        }
+        var selector = new SingleSelector<T>(rows);
+        int total = list.size();
+        int selected = size;
+        selector.operators = Operators.of(() -> "columns list[" + total + "]").then(() -> "rows [" + selected + "]");
+        return selector;
+    }
+
+    /**
+     * @return positions of the selected rows in the list, ascending
+     */
+    public int[] positions() {
+        var positions = new int[size];
+        for (int k = 0; k < size; k++) {
+            positions[k] = position(k);
+        }
+        return positions;
+    }
+
+    public IntSelector selectInt(String column) {
+        var values = intColumn(column);
+        var selected = new int[size];
+        for (int k = 0; k < size; k++) {
+            selected[k] = values[position(k)];
+        }
+        return new IntSelector(selected);
+    }
+
+    public LongSelector selectLong(String column) {
+        var values = longColumn(column);
+        var selected = new long[size];
+        for (int k = 0; k < size; k++) {
+            selected[k] = values[position(k)];
+        }
+        return new LongSelector(selected);
+    }
+
+    public DoubleSelector selectDouble(String column) {
+        var values = doubleColumn(column);
+        var selected = new double[size];
+        for (int k = 0; k < size; k++) {
+            selected[k] = values[position(k)];
+        }
+        return new DoubleSelector(selected);
+    }
+
+    private int position(int k) {
+        return selection == null ? k : selection[k];
+    }
+
+    // branch-free compaction into a new selection vector, this view keeps its
+    // own
+    private ColumnSelector<T> narrow(IntPredicate selected) {
+        var next = new int[size];
+        int count = 0;
+        for (int k = 0; k < size; k++) {
+            int i = position(k);
+            next[count] = i;
+            count += selected.test(i) ? 1 : 0;
+        }
+        return new ColumnSelector<>(this, next, count);
+    }
+
+    private Map<Integer, Double> aggregateBy(String key, String value, double seed, DoubleBinaryOperator combine) {
+        var groups = groups(key);
+        IntToDoubleFunction values = column(value);
+        var results = new double[groups.keys.length];
+        Arrays.fill(results, seed);
+        for (int k = 0; k < size; k++) {
+            int g = groups.slots[k];
+            results[g] = combine.applyAsDouble(results[g], values.applyAsDouble(position(k)));
+        }
+        var result = new LinkedHashMap<Integer, Double>();
+        for (int g = 0; g < results.length; g++) {
+            result.put(groups.keys[g], results[g]);
+        }
+        return result;
+    }
+
+    private IntToDoubleFunction column(String name) {
+        if (ints.containsKey(name)) {
+            var values = ints.get(name);
+            return i -> values[i];
+        }
+        if (longs.containsKey(name)) {
+            var values = longs.get(name);
+            return i -> values[i];
+        }
+        var values = doubleColumn(name);
+        return i -> values[i];
+    }
+
+    // group slot of each selected row, slots numbered by ascending key
+    private Groups groups(String key) {
+        var values = intColumn(key);
+        var keys = new int[size];
+        for (int k = 0; k < size; k++) {
+            keys[k] = values[position(k)];
+        }
+        var distinct = new IntSelector(keys.clone()).distinct().orderBy().toArray();
+        var slots = new int[size];
+        for (int k = 0; k < size; k++) {
+            slots[k] = Arrays.binarySearch(distinct, keys[k]);
+        }
+        return new Groups(distinct, slots);
+    }
+
+    private static class Groups {
+        final int[] keys;
+        final int[] slots;
+
+        Groups(int[] keys, int[] slots) {
+            this.keys = keys;
+            this.slots = slots;
+        }
+    }
+
+    private int[] intColumn(String column) {
+        var values = ints.get(column);
+        if (values == null)
+            throw missing(column, "int");
+        return values;
+    }
+
+    private long[] longColumn(String column) {
+        var values = longs.get(column);
+        if (values == null)
+            throw missing(column, "long");
+        return values;
+    }
+
+    private double[] doubleColumn(String column) {
+        var values = doubles.get(column);
+        if (values == null)
+            throw missing(column, "double");
+        return values;
+    }
+
+    private QException missing(String column, String type) {
+        return new QException("No " + type + " column named " + column, "COLUMN_EX");
+    }
+}
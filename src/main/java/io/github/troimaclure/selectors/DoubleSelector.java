@@ -0,0 +1,144 @@
+package io.github.troimaclure.selectors;
+
+import java.util.Arrays;
+import java.util.DoubleSummaryStatistics;
+import java.util.OptionalDouble;
+import java.util.function.DoublePredicate;
+import java.util.stream.Collectors;
+import java.util.stream.DoubleStream;
+
+/**
+ * Selector over a {@code double[]}, values are never boxed.
+ *
+ * @author ajosse
+ */
+public class DoubleSelector {
+    private double[] values;
+    // false while values is the array given by the caller
+    private boolean owned;
+
+    public DoubleSelector(double[] values) {
+        this.values = values;
+    }
+
+    public DoubleSelector where(DoublePredicate p) {
+        var result = new double[values.length];
+        int size = 0;
+        for (double v : values) {
+            if (p.test(v))
+                result[size++] = v;
+        }
+        values = Arrays.copyOf(result, size);
+        owned = true;
+        return this;
+    }
+
+    public DoubleSelector orderBy() {
+        if (!owned)
+            values = values.clone();
+        Arrays.sort(values);
+        owned = true;
+        return this;
+    }
+
+    public DoubleSelector orderByDesc() {
+        orderBy();
+        for (int i = 0, j = values.length - 1; i < j; i++, j--) {
+            double v = values[i];
+            values[i] = values[j];
+            values[j] = v;
+        }
+        return this;
+    }
+
+    /**
+     * <p>
+     * Keep the first occurrence of each value, in encounter order.
+     * </p>
+     * 
+     * @return {@code DoubleSelector}
+     */
+    public DoubleSelector distinct() {
+        var unique = values.clone();
+        Arrays.sort(unique);
+        int count = 0;
+        for (int i = 0; i < unique.length; i++) {
+            if (count == 0 || Double.compare(unique[count - 1], unique[i]) != 0)
+                unique[count++] = unique[i];
+        }
+        var seen = new boolean[count];
+        var result = new double[count];
+        int size = 0;
+        for (double v : values) {
+            int index = Arrays.binarySearch(unique, 0, count, v);
+            if (!seen[index]) {
+                seen[index] = true;
+                result[size++] = v;
+            }
+        }
+        values = result;
+        owned = true;
+        return this;
+    }
+
+    public double sum() {
+        double sum = 0;
+        for (double v : values) {
+            sum += v;
+        }
+        return sum;
+    }
+
+    public OptionalDouble min() {
+        if (values.length == 0)
+            return OptionalDouble.empty();
+        double min = values[0];
+        for (double v : values) {
+            min = Math.min(min, v);
+        }
+        return OptionalDouble.of(min);
+    }
+
+    public OptionalDouble max() {
+        if (values.length == 0)
+            return OptionalDouble.empty();
+        double max = values[0];
+        for (double v : values) {
+            max = Math.max(max, v);
+        }
+        return OptionalDouble.of(max);
+    }
+
+    public OptionalDouble average() {
+        if (values.length == 0)
+            return OptionalDouble.empty();
+        return OptionalDouble.of(sum() / values.length);
+    }
+
+    public int count() {
+        return values.length;
+    }
+
+    /**
+     * <p>
+     * count, sum, min, max and average computed in a single pass.
+     * </p>
+     * 
+     * @return {@code DoubleSummaryStatistics}
+     */
+    public DoubleSummaryStatistics summaryStatistics() {
+        var statistics = new DoubleSummaryStatistics();
+        for (double v : values) {
+            statistics.accept(v);
+        }
+        return statistics;
+    }
+
+    public SingleSelector<Double> boxed() {
+        return new SingleSelector<>(DoubleStream.of(values).boxed().collect(Collectors.toList()));
+    }
+
+    public double[] toArray() {
+        return values.clone();
+    }
+}
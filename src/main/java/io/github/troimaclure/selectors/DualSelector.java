@@ -1,17 +1,26 @@
 package io.github.troimaclure.selectors;
 
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BiFunction;
 import java.util.function.BiPredicate;
 import java.util.function.Function;
 import java.util.function.Predicate;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
+import org.apache.commons.lang3.tuple.MutablePair;
 import org.apache.commons.lang3.tuple.Pair;
 
-import io.github.troimaclure.Q;
 import io.github.troimaclure.exceptions.QException;
+import io.github.troimaclure.indexes.HashIndex;
+import io.github.troimaclure.profiling.Profile;
+import io.github.troimaclure.profiling.ProfileListener;
 import lombok.RequiredArgsConstructor;
 
 /**
@@ -24,6 +33,81 @@ public class DualSelector<T, U> {
     private final List<T> list;
     private final List<U> compare;
     private List<Pair<T, U>> pairs;
+    // null when profiling is off
+    Profile profile;
+    Operators operators;
+    // null unless parallel() was called
+    private ForkJoinPool pool;
+    private int threshold;
+    private boolean unordered;
+
+    /**
+     * <p>
+     * Record rows in / out, elapsed nanoseconds and allocated bytes of every
+     * operator run from now on, see {@link SingleSelector#profile()}.
+     * </p>
+     * 
+     * @return {@code DualSelector<T , U>}
+     */
+    public DualSelector<T, U> profile() {
+        return profile(new Profile());
+    }
+
+    public DualSelector<T, U> profile(ProfileListener listener) {
+        return profile(new Profile().listen(listener));
+    }
+
+    public DualSelector<T, U> profile(Profile profile) {
+        this.profile = profile;
+        return this;
+    }
+
+    public Profile getProfile() {
+        return profile;
+    }
+
+    /**
+     * <h3>Usage</h3>
+     * 
+     * <pre>{@code
+     * Q.join(orders, customers).parallel().on(Order::getCustomerId, Customer::getId).toList();
+     * }</pre>
+     * <p>
+     * Key joins ({@link #on(Function, Function)}) hash partition both lists on
+     * the join key and join the partitions on the common fork-join pool, when
+     * both lists hold at least {@value SingleSelector#PARALLEL_THRESHOLD}
+     * elements together. Pairs keep the sequential order unless
+     * {@link #unordered()} is called.
+     * </p>
+     * 
+     * @return {@code DualSelector<T , U>}
+     */
+    public DualSelector<T, U> parallel() {
+        return parallel(ForkJoinPool.commonPool(), SingleSelector.PARALLEL_THRESHOLD);
+    }
+
+    public DualSelector<T, U> parallel(ForkJoinPool pool, int threshold) {
+        this.pool = pool;
+        this.threshold = threshold;
+        return this;
+    }
+
+    /**
+     * <p>
+     * Parallel key joins emit the pairs of each partition as soon as they are
+     * found, in no particular order, skipping the ordered assembly.
+     * </p>
+     * 
+     * @return {@code DualSelector<T , U>}
+     */
+    public DualSelector<T, U> unordered() {
+        this.unordered = true;
+        return this;
+    }
+
+    public String explain() {
+        return operators().toString();
+    }
 
     /**
      * <h3>Usage</h3>
@@ -46,52 +130,500 @@ public class DualSelector<T, U> {
      * // joining will equals List<Pair> => ("a" , "a") , ("b" , "b")
      * }</pre>
      * 
+     * Use {@link #leftJoin}, {@link #rightJoin} or {@link #fullJoin} to keep
+     * them.
+     * 
      * @param consumer
      * @return {@code DualSelector<T , U>}
      */
     public DualSelector<T, U> on(BiPredicate<T, U> consumer) {
-        pairs = new ArrayList<>();
+        pairs = measure("on", list.size() + compare.size(), () -> {
+            var pairs = new ArrayList<Pair<T, U>>();
+            for (T t1 : list) {
+                var collect = compare.stream().filter(e -> consumer.test(t1, e)).collect(Collectors.toList());
+                for (var u1 : collect) {
+                    pairs.add(Pair.of(t1, u1));
+                }
+            }
+            return pairs;
+        });
+        return this;
+    }
+
+    /**
+     * <h3>Usage</h3>
+     * 
+     * <pre>{@code
+     * Q.from(listA).join(listB).on(A::getProp, B::getProp);
+     * }</pre>
+     * <p>
+     * Equi-join on extracted keys (keys are matched with
+     * {@code Objects.equals}). A hash table is built over the smaller list and
+     * probed in one pass, pairs keep the same order and duplicates as
+     * {@link #on(BiPredicate)}.
+     * </p>
+     * 
+     * @param <K>
+     * @param leftKey
+     * @param rightKey
+     * @return {@code DualSelector<T , U>}
+     */
+    public <K> DualSelector<T, U> on(Function<? super T, ? extends K> leftKey,
+            Function<? super U, ? extends K> rightKey) {
+        return on(leftKey, rightKey, null);
+    }
+
+    /**
+     * Same as {@link #on(Function, Function)}, {@code residual} is tested on each
+     * matched pair before it is kept (null to keep every match).
+     * 
+     * @param <K>
+     * @param leftKey
+     * @param rightKey
+     * @param residual
+     * @return {@code DualSelector<T , U>}
+     */
+    public <K> DualSelector<T, U> on(Function<? super T, ? extends K> leftKey,
+            Function<? super U, ? extends K> rightKey, BiPredicate<T, U> residual) {
+        if (pool != null && list.size() + compare.size() >= threshold) {
+            pairs = measure(unordered ? "on keys (parallel, unordered)" : "on keys (parallel)",
+                    list.size() + compare.size(),
+                    () -> PartitionedJoin.join(list, compare, leftKey, rightKey, residual, pool, unordered));
+            return this;
+        }
+        pairs = measure("on keys", list.size() + compare.size(), () -> {
+            var matches = compare.size() <= list.size() ? probeLeft(leftKey, rightKey)
+                    : probeRight(leftKey, rightKey);
+            var pairs = new ArrayList<Pair<T, U>>();
+            for (int i = 0; i < list.size(); i++) {
+                var t1 = list.get(i);
+                if (matches.get(i) == null)
+                    continue;
+                for (var u1 : matches.get(i)) {
+                    if (residual == null || residual.test(t1, u1))
+                        pairs.add(Pair.of(t1, u1));
+                }
+            }
+            return pairs;
+        });
+        return this;
+    }
+
+    /**
+     * <h3>Usage</h3>
+     * 
+     * <pre>{@code
+     * Q.join(categories, products).selectOn(Category::getId, Product::getId_category,
+     *         (c, p) -> new CategoryProduct(p.getName(), c.getName())).toList();
+     * }</pre>
+     * <p>
+     * Same matches and order as {@link #on(Function, Function)} followed by
+     * {@link #select(Function)}, without creating a Pair per match. When the
+     * right list is the smaller one it is hashed and {@code func} is applied to
+     * each match as the left list is probed. Otherwise the left keys are
+     * hashed, and the right list is first read into one bucket per left
+     * element so that results keep the left order.
+     * </p>
+     * 
+     * @param <K>
+     * @param <R>
+     * @param leftKey
+     * @param rightKey
+     * @param func
+     * @return {@code SingleSelector<R>}
+     */
+    public <K, R> SingleSelector<R> selectOn(Function<? super T, ? extends K> leftKey,
+            Function<? super U, ? extends K> rightKey, BiFunction<? super T, ? super U, ? extends R> func) {
+        List<R> results = measure("selectOn", list.size() + compare.size(), () -> {
+            var collect = new ArrayList<R>(Math.max(list.size(), compare.size()));
+            if (compare.size() <= list.size()) {
+                var table = table(rightKey);
+                for (T t1 : list) {
+                    project(collect, t1, table.get(leftKey.apply(t1)), func);
+                }
+                return collect;
+            }
+            var matches = probeRight(leftKey, rightKey);
+            for (int i = 0; i < list.size(); i++) {
+                project(collect, list.get(i), matches.get(i), func);
+            }
+            return collect;
+        });
+        return single(results);
+    }
+
+    /**
+     * <h3>Usage</h3>
+     * 
+     * <pre>{@code
+     * var byId = Q.index(listB, B::getProp);
+     * Q.from(listA).join(listB).on(A::getProp, byId);
+     * }</pre>
+     * <p>
+     * Same as {@link #on(Function, Function)} but the matches are read from an
+     * index built once over the right list, nothing is hashed again.
+     * </p>
+     * 
+     * @param <K>
+     * @param leftKey
+     * @param index
+     * @return {@code DualSelector<T , U>}
+     */
+    public <K> DualSelector<T, U> on(Function<? super T, ? extends K> leftKey, HashIndex<K, U> index) {
+        pairs = measure("on index", list.size(), () -> {
+            var pairs = new ArrayList<Pair<T, U>>();
+            for (T t1 : list) {
+                for (var u1 : index.get(leftKey.apply(t1))) {
+                    pairs.add(Pair.of(t1, u1));
+                }
+            }
+            return pairs;
+        });
+        return this;
+    }
+
+    /**
+     * <h3>Usage</h3>
+     * 
+     * <pre>{@code
+     * Q.join(categories, products).leftJoin(Category::getId, Product::getId_category).toList();
+     * }</pre>
+     * <p>
+     * Same as {@link #on(Function, Function)} but a left element without match
+     * is kept once, paired with null. Pairs follow the left list order.
+     * </p>
+     * 
+     * @param <K>
+     * @param leftKey
+     * @param rightKey
+     * @return {@code DualSelector<T , U>}
+     */
+    public <K> DualSelector<T, U> leftJoin(Function<? super T, ? extends K> leftKey,
+            Function<? super U, ? extends K> rightKey) {
+        pairs = measure("leftJoin", list.size() + compare.size(), () -> outer(leftKey, rightKey, false));
+        return this;
+    }
+
+    /**
+     * <p>
+     * Mirror of {@link #leftJoin}: a right element without match is kept once,
+     * paired with a null left. Pairs follow the right list order.
+     * </p>
+     * 
+     * @param <K>
+     * @param leftKey
+     * @param rightKey
+     * @return {@code DualSelector<T , U>}
+     */
+    public <K> DualSelector<T, U> rightJoin(Function<? super T, ? extends K> leftKey,
+            Function<? super U, ? extends K> rightKey) {
+        pairs = measure("rightJoin", list.size() + compare.size(), () -> {
+            var table = new HashMap<K, List<T>>();
+            for (T t1 : list) {
+                table.computeIfAbsent(leftKey.apply(t1), k -> new ArrayList<>(1)).add(t1);
+            }
+            var pairs = new ArrayList<Pair<T, U>>();
+            for (U u1 : compare) {
+                var bucket = table.get(rightKey.apply(u1));
+                if (bucket == null) {
+                    pairs.add(Pair.of(null, u1));
+                    continue;
+                }
+                for (var t1 : bucket) {
+                    pairs.add(Pair.of(t1, u1));
+                }
+            }
+            return pairs;
+        });
+        return this;
+    }
+
+    /**
+     * <h3>Usage</h3>
+     * 
+     * <pre>{@code
+     * Q.join(categories, products).fullJoin(Category::getId, Product::getId_category).toList();
+     * }</pre>
+     * <p>
+     * {@link #leftJoin} followed by the right elements that matched nothing,
+     * paired with a null left, in right list order. Unmatched right elements
+     * are found with a matched flag on each hash bucket, without a second join.
+     * </p>
+     * 
+     * @param <K>
+     * @param leftKey
+     * @param rightKey
+     * @return {@code DualSelector<T , U>}
+     */
+    public <K> DualSelector<T, U> fullJoin(Function<? super T, ? extends K> leftKey,
+            Function<? super U, ? extends K> rightKey) {
+        pairs = measure("fullJoin", list.size() + compare.size(), () -> outer(leftKey, rightKey, true));
+        return this;
+    }
+
+    /**
+     * <h3>Usage</h3>
+     * 
+     * <pre>{@code
+     * Q.join(ordersById, linesByOrderId).mergeOn(Order::getId, Line::getOrderId);
+     * }</pre>
+     * <p>
+     * Inner equi-join of two lists already sorted ascending by their key
+     * (nulls first): both lists are walked once side by side, O(n + m) and no
+     * hash table. Pairs are the same as {@link #on(Function, Function)}.
+     * Throws a {@code JOIN_EX} QException when a list is not sorted.
+     * </p>
+     * 
+     * @param <K>
+     * @param leftKey
+     * @param rightKey
+     * @return {@code DualSelector<T , U>}
+     */
+    public <K extends Comparable<? super K>> DualSelector<T, U> mergeOn(Function<? super T, ? extends K> leftKey,
+            Function<? super U, ? extends K> rightKey) {
+        pairs = measure("mergeOn", list.size() + compare.size(), () -> {
+            Comparator<K> order = Comparator.nullsFirst(Comparator.naturalOrder());
+            var leftKeys = sortedKeys(list, leftKey, order, "left");
+            var rightKeys = sortedKeys(compare, rightKey, order, "right");
+            var pairs = new ArrayList<Pair<T, U>>();
+            int i = 0;
+            int j = 0;
+            while (i < list.size() && j < compare.size()) {
+                int c = order.compare(leftKeys.get(i), rightKeys.get(j));
+                if (c < 0) {
+                    i++;
+                } else if (c > 0) {
+                    j++;
+                } else {
+                    var key = rightKeys.get(j);
+                    int end = j;
+                    while (end < compare.size() && order.compare(rightKeys.get(end), key) == 0)
+                        end++;
+                    for (; i < list.size() && order.compare(leftKeys.get(i), key) == 0; i++) {
+                        for (int k = j; k < end; k++) {
+                            pairs.add(Pair.of(list.get(i), compare.get(k)));
+                        }
+                    }
+                    j = end;
+                }
+            }
+            return pairs;
+        });
+        return this;
+    }
+
+    private static <E, K> List<K> sortedKeys(List<E> elements, Function<? super E, ? extends K> keyExtractor,
+            Comparator<K> order, String side) {
+        var keys = new ArrayList<K>(elements.size());
+        for (E e : elements) {
+            K key = keyExtractor.apply(e);
+            if (!keys.isEmpty() && order.compare(keys.get(keys.size() - 1), key) > 0)
+                throw new QException("mergeOn needs the " + side + " list sorted by its key, index " + keys.size()
+                        + " is out of order", "JOIN_EX");
+            keys.add(key);
+        }
+        return keys;
+    }
+
+    // right rows of one key, matched is set once a left row probes them
+    private static class Bucket<U> {
+        final List<U> rows = new ArrayList<>(1);
+        boolean matched;
+    }
+
+    private <K> List<Pair<T, U>> outer(Function<? super T, ? extends K> leftKey,
+            Function<? super U, ? extends K> rightKey, boolean full) {
+        var table = new HashMap<K, Bucket<U>>();
+        var buckets = new ArrayList<Bucket<U>>(full ? compare.size() : 0);
+        for (U u1 : compare) {
+            var bucket = table.computeIfAbsent(rightKey.apply(u1), k -> new Bucket<>());
+            bucket.rows.add(u1);
+            if (full)
+                buckets.add(bucket);
+        }
+        var pairs = new ArrayList<Pair<T, U>>();
         for (T t1 : list) {
-            var collect = compare.stream().filter(e -> consumer.test(t1, e)).collect(Collectors.toList());
-            for (var u1 : collect) {
+            var bucket = table.get(leftKey.apply(t1));
+            if (bucket == null) {
+                pairs.add(Pair.of(t1, null));
+                continue;
+            }
+            bucket.matched = true;
+            for (var u1 : bucket.rows) {
                 pairs.add(Pair.of(t1, u1));
             }
         }
-        return this;
+        for (int i = 0; i < buckets.size(); i++) {
+            if (!buckets.get(i).matched)
+                pairs.add(Pair.of(null, compare.get(i)));
+        }
+        return pairs;
+    }
+
+    private <R> void project(List<R> collect, T t1, List<U> bucket,
+            BiFunction<? super T, ? super U, ? extends R> func) {
+        if (bucket == null)
+            return;
+        for (int j = 0; j < bucket.size(); j++) {
+            collect.add(func.apply(t1, bucket.get(j)));
+        }
+    }
+
+    private <K> Map<K, List<U>> table(Function<? super U, ? extends K> rightKey) {
+        var table = new HashMap<K, List<U>>();
+        for (U u1 : compare) {
+            table.computeIfAbsent(rightKey.apply(u1), k -> new ArrayList<>(1)).add(u1);
+        }
+        return table;
+    }
+
+    // hash table over compare, each element of list looks up its matches
+    private <K> List<List<U>> probeLeft(Function<? super T, ? extends K> leftKey,
+            Function<? super U, ? extends K> rightKey) {
+        Map<K, List<U>> table = table(rightKey);
+        var matches = new ArrayList<List<U>>(list.size());
+        for (T t1 : list) {
+            matches.add(table.get(leftKey.apply(t1)));
+        }
+        return matches;
+    }
+
+    // hash table over list keys, compare is streamed once into the shared buckets
+    private <K> List<List<U>> probeRight(Function<? super T, ? extends K> leftKey,
+            Function<? super U, ? extends K> rightKey) {
+        var table = new HashMap<K, List<U>>();
+        var matches = new ArrayList<List<U>>(list.size());
+        for (T t1 : list) {
+            matches.add(table.computeIfAbsent(leftKey.apply(t1), k -> new ArrayList<>()));
+        }
+        for (U u1 : compare) {
+            var bucket = table.get(rightKey.apply(u1));
+            if (bucket != null)
+                bucket.add(u1);
+        }
+        return matches;
     }
 
     public DualSelector<T, U> where(Predicate<Pair<T, U>> predicate) {
         checkPair();
-        pairs = pairs.stream().filter(predicate).collect(Collectors.toList());
+        pairs = measure("where", pairs.size(), () -> pairs.stream().filter(predicate).collect(Collectors.toList()));
         return this;
     }
 
+    /**
+     * <h3>Usage</h3>
+     * 
+     * <pre>{@code
+     * Q.join(categories, products).on(Category::getId, Product::getId_category).groupByLeft(Category::getId);
+     * }</pre>
+     * <p>
+     * Group the right elements by left key, each key is computed once and
+     * groups keep the order in which their key is first seen. The left element
+     * of a group is the first one seen with its key, pairs with a null left are
+     * skipped.
+     * </p>
+     * 
+     * @param <F>
+     * @param keyExtractor
+     * @return {@code SingleSelector<Pair<T, List<U>>>}
+     */
     public <F extends Comparable<? super F>> SingleSelector<Pair<T, List<U>>> groupByLeft(
             Function<? super T, ? extends F> keyExtractor) {
-        var list = new ArrayList<Pair<T, List<U>>>();
-        for (var pair : this.pairs) {
-            if (pair.getLeft() == null)
-                continue;
-            Pair<T, List<U>> lookup = null;
-            for (var pair2 : list) {
-                if (keyExtractor.apply(pair.getLeft()).equals(keyExtractor.apply(pair2.getLeft()))) {
-                    lookup = pair2;
-                    break;
-                }
+        checkPair();
+        return single(measure("groupByLeft", pairs.size(), () -> {
+            var groups = new LinkedHashMap<F, Pair<T, List<U>>>();
+            for (var pair : this.pairs) {
+                if (pair.getLeft() == null)
+                    continue;
+                groups.computeIfAbsent(keyExtractor.apply(pair.getLeft()),
+                        k -> Pair.of(pair.getLeft(), new ArrayList<U>())).getRight().add(pair.getRight());
             }
-            if (lookup == null) {
-                lookup = Pair.of(pair.getLeft(), new ArrayList<U>());
-                list.add(lookup);
+            return new ArrayList<>(groups.values());
+        }));
+    }
+
+    /**
+     * <h3>Usage</h3>
+     * 
+     * <pre>{@code
+     * Q.join(categories, products).on(Category::getId, Product::getId_category)
+     *         .groupByLeft(Category::getId, 0, (count, p) -> count + 1);
+     * }</pre>
+     * <p>
+     * Same as {@link #groupByLeft(Function)} but the right elements of each
+     * group are folded into an accumulator, starting from {@code seed}, instead
+     * of being kept in a list.
+     * </p>
+     * 
+     * @param <F>
+     * @param <A>
+     * @param keyExtractor
+     * @param seed
+     * @param accumulator
+     * @return {@code SingleSelector<Pair<T, A>>}
+     */
+    public <F extends Comparable<? super F>, A> SingleSelector<Pair<T, A>> groupByLeft(
+            Function<? super T, ? extends F> keyExtractor, A seed, BiFunction<A, ? super U, A> accumulator) {
+        checkPair();
+        return single(measure("groupByLeft", pairs.size(), () -> {
+            var groups = new LinkedHashMap<F, MutablePair<T, A>>();
+            for (var pair : this.pairs) {
+                if (pair.getLeft() == null)
+                    continue;
+                var group = groups.computeIfAbsent(keyExtractor.apply(pair.getLeft()),
+                        k -> MutablePair.of(pair.getLeft(), seed));
+                group.setRight(accumulator.apply(group.getRight(), pair.getRight()));
             }
-            lookup.getRight().add(pair.getRight());
-        }
-        return Q.from(list);
+            return new ArrayList<Pair<T, A>>(groups.values());
+        }));
+    }
+
+    /**
+     * <p>
+     * Group the left elements by right key, see {@link #groupByLeft(Function)}.
+     * Pairs with a null right are skipped.
+     * </p>
+     * 
+     * @param <F>
+     * @param keyExtractor
+     * @return {@code SingleSelector<Pair<List<T>, U>>}
+     */
+    public <F extends Comparable<? super F>> SingleSelector<Pair<List<T>, U>> groupByRight(
+            Function<? super U, ? extends F> keyExtractor) {
+        checkPair();
+        return single(measure("groupByRight", pairs.size(), () -> {
+            var groups = new LinkedHashMap<F, Pair<List<T>, U>>();
+            for (var pair : this.pairs) {
+                if (pair.getRight() == null)
+                    continue;
+                groups.computeIfAbsent(keyExtractor.apply(pair.getRight()),
+                        k -> Pair.of(new ArrayList<T>(), pair.getRight())).getLeft().add(pair.getLeft());
+            }
+            return new ArrayList<>(groups.values());
+        }));
+    }
+
+    public <F extends Comparable<? super F>, A> SingleSelector<Pair<A, U>> groupByRight(
+            Function<? super U, ? extends F> keyExtractor, A seed, BiFunction<A, ? super T, A> accumulator) {
+        checkPair();
+        return single(measure("groupByRight", pairs.size(), () -> {
+            var groups = new LinkedHashMap<F, MutablePair<A, U>>();
+            for (var pair : this.pairs) {
+                if (pair.getRight() == null)
+                    continue;
+                var group = groups.computeIfAbsent(keyExtractor.apply(pair.getRight()),
+                        k -> MutablePair.of(seed, pair.getRight()));
+                group.setLeft(accumulator.apply(group.getLeft(), pair.getLeft()));
+            }
+            return new ArrayList<Pair<A, U>>(groups.values());
+        }));
     }
 
     public <K> SingleSelector<K> select(Function<? super Pair<T, U>, ? extends K> func) {
         checkPair();
-        List<K> collect = this.pairs.stream().map(e -> func.apply(e)).collect(Collectors.toList());
-        return new SingleSelector<K>(collect);
+        List<K> collect = measure("select", pairs.size(),
+                () -> this.pairs.stream().map(e -> func.apply(e)).collect(Collectors.toList()));
+        return single(collect);
     }
 
     public List<Pair<T, U>> toList() {
@@ -104,6 +636,27 @@ public class DualSelector<T, U> {
         return this.toList().stream().collect(Collectors.toMap(keyExtractor, keyExtractor2));
     }
 
+    private Operators operators() {
+        if (operators == null)
+            operators = Operators.of(() -> "join list[" + list.size() + "] with list[" + compare.size() + "]");
+        return operators;
+    }
+
+    private <R> R measure(String operator, long rowsIn, Supplier<R> body) {
+        operators = operators().then(operator);
+        if (profile == null)
+            return body.get();
+        return profile.measure(operator, rowsIn, body, List.of());
+    }
+
+    // keeps profiling and the operator chain on the selector
+    private <K> SingleSelector<K> single(List<K> list) {
+        var selector = new SingleSelector<K>(list);
+        selector.profile = profile;
+        selector.operators = operators();
+        return selector;
+    }
+
     private void checkPair() {
         if (this.pairs == null) {
             throw new QException("You have to call ON with JOIN, the set is empty", "JOIN_EX");
@@ -0,0 +1,219 @@
+package io.github.troimaclure.selectors;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Flow;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+import io.github.troimaclure.exceptions.QException;
+
+/**
+ * <h3>Usage</h3>
+ * 
+ * <pre>{@code
+ * Flow.Publisher<List<Event>> batches = Q.from(eventPublisher).where(Event::isValid)
+ *         .distinct(Event::getId, 100_000).chunk(500).toPublisher();
+ * batches.subscribe(bulkWriter);
+ * }</pre>
+ * <p>
+ * Streaming selector over a {@link Flow.Publisher}: operators are applied to
+ * each element as it is published, nothing is buffered beyond the current
+ * chunk and the distinct window, so memory stays bounded however long the
+ * stream runs. Demand goes upstream: the publisher never sends more than
+ * what the final subscriber requested (plus the elements dropped by where /
+ * distinct, which are requested again one by one).
+ * </p>
+ * Each subscriber to {@link #toPublisher()} gets its own operator state and
+ * its own subscription to the source.
+ *
+ * @author ajosse
+ */
+public class FlowSelector<T> {
+    public static final int DEFAULT_DISTINCT_WINDOW = 1 << 16;
+
+    private final Flow.Publisher<T> publisher;
+
+    public FlowSelector(Flow.Publisher<T> publisher) {
+        this.publisher = publisher;
+    }
+
+    public FlowSelector<T> where(Predicate<T> p) {
+        return new FlowSelector<T>(downstream -> publisher.subscribe(new Operator<T, T>(downstream) {
+            @Override
+            void next(T t) {
+                if (p.test(t))
+                    emit(t);
+                else
+                    upstream.request(1);
+            }
+        }));
+    }
+
+    public <K> FlowSelector<K> select(Function<T, K> func) {
+        return new FlowSelector<K>(downstream -> publisher.subscribe(new Operator<T, K>(downstream) {
+            @Override
+            void next(T t) {
+                emit(func.apply(t));
+            }
+        }));
+    }
+
+    public FlowSelector<T> distinct(Function<? super T, ?> keyExtractor) {
+        return distinct(keyExtractor, DEFAULT_DISTINCT_WINDOW);
+    }
+
+    /**
+     * <p>
+     * Drop the elements whose key was seen among the last {@code window}
+     * distinct keys (least recently seen keys are forgotten first), exact while
+     * the stream holds at most {@code window} distinct keys.
+     * </p>
+     * 
+     * @param keyExtractor
+     * @param window
+     * @return {@code FlowSelector<T>}
+     */
+    public FlowSelector<T> distinct(Function<? super T, ?> keyExtractor, int window) {
+        if (window < 1)
+            throw new QException("Distinct window must be positive", "FLOW_EX");
+        return new FlowSelector<T>(downstream -> publisher.subscribe(new Operator<T, T>(downstream) {
+            private final Map<Object, Boolean> seen = new LinkedHashMap<>(16, .75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Object, Boolean> eldest) {
+                    return size() > window;
+                }
+            };
+
+            @Override
+            void next(T t) {
+                if (seen.put(keyExtractor.apply(t), Boolean.TRUE) == null)
+                    emit(t);
+                else
+                    upstream.request(1);
+            }
+        }));
+    }
+
+    /**
+     * <p>
+     * Lists of {@code size} consecutive elements, the last one may be shorter.
+     * A request for {@code n} chunks asks the source for {@code n * size}
+     * elements.
+     * </p>
+     * 
+     * @param size
+     * @return {@code FlowSelector<List<T>>}
+     */
+    public FlowSelector<List<T>> chunk(int size) {
+        if (size < 1)
+            throw new QException("Batch size must be positive", "BATCH_EX");
+        return new FlowSelector<List<T>>(downstream -> publisher.subscribe(new Operator<T, List<T>>(downstream) {
+            private List<T> batch = new ArrayList<>();
+
+            @Override
+            public void request(long n) {
+                if (n <= 0)
+                    upstream.request(n);
+                else
+                    upstream.request(n >= Long.MAX_VALUE / size ? Long.MAX_VALUE : n * size);
+            }
+
+            @Override
+            void next(T t) {
+                batch.add(t);
+                if (batch.size() == size) {
+                    var full = batch;
+                    batch = new ArrayList<>();
+                    emit(full);
+                }
+            }
+
+            @Override
+            void complete() {
+                if (!batch.isEmpty())
+                    emit(batch);
+                batch = null;
+            }
+        }));
+    }
+
+    public Flow.Publisher<T> toPublisher() {
+        return publisher;
+    }
+
+    // one operator instance per subscription, signals from upstream are
+    // serialized (Flow contract), a failing operator cancels upstream
+    private abstract static class Operator<T, R> implements Flow.Subscriber<T>, Flow.Subscription {
+        private final Flow.Subscriber<? super R> downstream;
+        Flow.Subscription upstream;
+        private volatile boolean done;
+
+        Operator(Flow.Subscriber<? super R> downstream) {
+            this.downstream = downstream;
+        }
+
+        abstract void next(T t);
+
+        void complete() {
+        }
+
+        final void emit(R r) {
+            downstream.onNext(r);
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            upstream = subscription;
+            downstream.onSubscribe(this);
+        }
+
+        @Override
+        public void onNext(T item) {
+            if (done)
+                return;
+            try {
+                next(item);
+            } catch (RuntimeException e) {
+                done = true;
+                upstream.cancel();
+                downstream.onError(e);
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            if (done)
+                return;
+            done = true;
+            downstream.onError(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            if (done)
+                return;
+            done = true;
+            try {
+                complete();
+            } catch (RuntimeException e) {
+                downstream.onError(e);
+                return;
+            }
+            downstream.onComplete();
+        }
+
+        @Override
+        public void request(long n) {
+            upstream.request(n);
+        }
+
+        @Override
+        public void cancel() {
+            done = true;
+            upstream.cancel();
+        }
+    }
+}
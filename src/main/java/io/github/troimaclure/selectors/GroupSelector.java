@@ -0,0 +1,154 @@
+package io.github.troimaclure.selectors;
+
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collectors;
+
+import io.github.troimaclure.spill.External;
+
+/**
+ * Result of {@link SingleSelector#groupBy(Function)} : a
+ * {@code SingleSelector<Entry<K, List<T>>>} whose groups are only built when
+ * used, plus aggregates folding each element into a per key accumulator in a
+ * single pass (memory is O(groups), not O(rows)). Groups keep the order in
+ * which their key is first seen.
+ *
+ * @author ajosse
+ */
+public class GroupSelector<K, T> extends SingleSelector<Entry<K, List<T>>> {
+    private final SingleSelector<T> source;
+    private final Function<? super T, K> keyExtractor;
+
+    GroupSelector(SingleSelector<T> source, Function<? super T, K> keyExtractor) {
+        super(() -> {
+            var stream = source.stream();
+            if (source.spill != null)
+                return External.groupBy(stream, keyExtractor, source.spill);
+            return barrier(stream, () -> new ArrayList<>(stream
+                    .collect(Collectors.groupingBy(keyExtractor, LinkedHashMap::new, Collectors.toList())).entrySet()));
+        }, null);
+        this.source = source;
+        this.keyExtractor = keyExtractor;
+    }
+
+    public SingleSelector<Entry<K, Long>> count() {
+        return longSum(e -> 1L);
+    }
+
+    /**
+     * <p>
+     * Sum per key (named longSum as the inherited sumLong works on the groups).
+     * </p>
+     * 
+     * @param keyExtractor
+     * @return {@code SingleSelector<Entry<K, Long>>}
+     */
+    public SingleSelector<Entry<K, Long>> longSum(ToLongFunction<? super T> keyExtractor) {
+        var groups = fold("longSum", () -> new long[1], (sum, t) -> sum[0] += keyExtractor.applyAsLong(t), (a, b) -> {
+            a[0] += b[0];
+            return a;
+        });
+        return entries(groups, sum -> sum[0]);
+    }
+
+    public SingleSelector<Entry<K, Double>> doubleSum(ToDoubleFunction<? super T> keyExtractor) {
+        var groups = fold("doubleSum", () -> new double[1], (sum, t) -> sum[0] += keyExtractor.applyAsDouble(t),
+                (a, b) -> {
+                    a[0] += b[0];
+                    return a;
+                });
+        return entries(groups, sum -> sum[0]);
+    }
+
+    public <U extends Comparable<? super U>> SingleSelector<Entry<K, U>> min(
+            Function<? super T, ? extends U> keyExtractor) {
+        return best("min", keyExtractor, -1);
+    }
+
+    public <U extends Comparable<? super U>> SingleSelector<Entry<K, U>> max(
+            Function<? super T, ? extends U> keyExtractor) {
+        return best("max", keyExtractor, 1);
+    }
+
+    /**
+     * <h3>Usage</h3>
+     * 
+     * <pre>{@code
+     * Q.from(products).groupBy(Product::getId_category).aggregate("", (names, p) -> names + p.getName());
+     * }</pre>
+     * <p>
+     * Fold the elements of each group, in encounter order, starting from
+     * {@code seed}.
+     * </p>
+     * 
+     * @param <A>
+     * @param seed
+     * @param accumulator
+     * @return {@code SingleSelector<Entry<K, A>>}
+     */
+    public <A> SingleSelector<Entry<K, A>> aggregate(A seed, BiFunction<A, ? super T, A> accumulator) {
+        var groups = source.run("aggregate", s -> {
+            var map = new LinkedHashMap<K, A>();
+            s.forEachOrdered(t -> {
+                var key = keyExtractor.apply(t);
+                var value = map.containsKey(key) ? map.get(key) : seed;
+                map.put(key, accumulator.apply(value, t));
+            });
+            return map;
+        });
+        return entries(groups, Function.identity());
+    }
+
+    private <U extends Comparable<? super U>> SingleSelector<Entry<K, U>> best(String name,
+            Function<? super T, ? extends U> keyExtractor, int sign) {
+        BiConsumer<Object[], Object> keep = (best, value) -> {
+            if (value != null && (best[0] == null || Integer.signum(compare(value, best[0])) == sign))
+                best[0] = value;
+        };
+        var groups = fold(name, () -> new Object[1], (best, t) -> keep.accept(best, keyExtractor.apply(t)), (a, b) -> {
+            keep.accept(a, b[0]);
+            return a;
+        });
+        return entries(groups, best -> cast(best[0]));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <U extends Comparable<? super U>> int compare(Object a, Object b) {
+        return ((U) a).compareTo((U) b);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <U> U cast(Object value) {
+        return (U) value;
+    }
+
+    // one accumulator per key, merged in encounter order when parallel
+    private <A> LinkedHashMap<K, A> fold(String name, Supplier<A> newAccumulator, BiConsumer<A, ? super T> accumulate,
+            BinaryOperator<A> combine) {
+        return source.run(name, s -> s.collect(LinkedHashMap::new,
+                (map, t) -> accumulate.accept(map.computeIfAbsent(keyExtractor.apply(t), k -> newAccumulator.get()), t),
+                (a, b) -> b.forEach((key, value) -> a.merge(key, value, combine))));
+    }
+
+    private <A, R> SingleSelector<Entry<K, R>> entries(Map<K, A> groups, Function<A, R> result) {
+        var list = new ArrayList<Entry<K, R>>(groups.size());
+        for (var group : groups.entrySet()) {
+            list.add(new SimpleImmutableEntry<>(group.getKey(), result.apply(group.getValue())));
+        }
+        var selector = new SingleSelector<Entry<K, R>>(list);
+        selector.profile = profile;
+        selector.operators = operators;
+        return selector;
+    }
+}
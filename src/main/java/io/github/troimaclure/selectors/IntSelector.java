@@ -0,0 +1,150 @@
+package io.github.troimaclure.selectors;
+
+import java.util.Arrays;
+import java.util.IntSummaryStatistics;
+import java.util.OptionalDouble;
+import java.util.OptionalInt;
+import java.util.function.IntPredicate;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Selector over an {@code int[]}, values are never boxed.
+ *
+ * @author ajosse
+ */
+public class IntSelector {
+    private int[] values;
+    // false while values is the array given by the caller
+    private boolean owned;
+
+    public IntSelector(int[] values) {
+        this.values = values;
+    }
+
+    public IntSelector where(IntPredicate p) {
+        var result = new int[values.length];
+        int size = 0;
+        for (int v : values) {
+            if (p.test(v))
+                result[size++] = v;
+        }
+        values = Arrays.copyOf(result, size);
+        owned = true;
+        return this;
+    }
+
+    public IntSelector orderBy() {
+        if (!owned)
+            values = values.clone();
+        Arrays.sort(values);
+        owned = true;
+        return this;
+    }
+
+    public IntSelector orderByDesc() {
+        orderBy();
+        for (int i = 0, j = values.length - 1; i < j; i++, j--) {
+            int v = values[i];
+            values[i] = values[j];
+            values[j] = v;
+        }
+        return this;
+    }
+
+    /**
+     * <p>
+     * Keep the first occurrence of each value, in encounter order.
+     * </p>
+     * 
+     * @return {@code IntSelector}
+     */
+    public IntSelector distinct() {
+        var unique = values.clone();
+        Arrays.sort(unique);
+        int count = 0;
+        for (int i = 0; i < unique.length; i++) {
+            if (count == 0 || Integer.compare(unique[count - 1], unique[i]) != 0)
+                unique[count++] = unique[i];
+        }
+        var seen = new boolean[count];
+        var result = new int[count];
+        int size = 0;
+        for (int v : values) {
+            int index = Arrays.binarySearch(unique, 0, count, v);
+            if (!seen[index]) {
+                seen[index] = true;
+                result[size++] = v;
+            }
+        }
+        values = result;
+        owned = true;
+        return this;
+    }
+
+    public int sum() {
+        int sum = 0;
+        for (int v : values) {
+            sum += v;
+        }
+        return sum;
+    }
+
+    public OptionalInt min() {
+        if (values.length == 0)
+            return OptionalInt.empty();
+        int min = values[0];
+        for (int v : values) {
+            min = Math.min(min, v);
+        }
+        return OptionalInt.of(min);
+    }
+
+    public OptionalInt max() {
+        if (values.length == 0)
+            return OptionalInt.empty();
+        int max = values[0];
+        for (int v : values) {
+            max = Math.max(max, v);
+        }
+        return OptionalInt.of(max);
+    }
+
+    public OptionalDouble average() {
+        if (values.length == 0)
+            return OptionalDouble.empty();
+        // accumulated wider than int so the average does not overflow with the sum
+        long sum = 0;
+        for (int v : values) {
+            sum += v;
+        }
+        return OptionalDouble.of((double) sum / values.length);
+    }
+
+    public int count() {
+        return values.length;
+    }
+
+    /**
+     * <p>
+     * count, sum, min, max and average computed in a single pass.
+     * </p>
+     * 
+     * @return {@code IntSummaryStatistics}
+     */
+    public IntSummaryStatistics summaryStatistics() {
+        var statistics = new IntSummaryStatistics();
+        for (int v : values) {
+            statistics.accept(v);
+        }
+        return statistics;
+    }
+
+    public SingleSelector<Integer> boxed() {
+        return new SingleSelector<>(IntStream.of(values).boxed().collect(Collectors.toList()));
+    }
+
+    public int[] toArray() {
+        return values.clone();
+    }
+}
@@ -0,0 +1,150 @@
+package io.github.troimaclure.selectors;
+
+import java.util.Arrays;
+import java.util.LongSummaryStatistics;
+import java.util.OptionalDouble;
+import java.util.OptionalLong;
+import java.util.function.LongPredicate;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+/**
+ * Selector over a {@code long[]}, values are never boxed.
+ *
+ * @author ajosse
+ */
+public class LongSelector {
+    private long[] values;
+    // false while values is the array given by the caller
+    private boolean owned;
+
+    public LongSelector(long[] values) {
+        this.values = values;
+    }
+
+    public LongSelector where(LongPredicate p) {
+        var result = new long[values.length];
+        int size = 0;
+        for (long v : values) {
+            if (p.test(v))
+                result[size++] = v;
+        }
+        values = Arrays.copyOf(result, size);
+        owned = true;
+        return this;
+    }
+
+    public LongSelector orderBy() {
+        if (!owned)
+            values = values.clone();
+        Arrays.sort(values);
+        owned = true;
+        return this;
+    }
+
+    public LongSelector orderByDesc() {
+        orderBy();
+        for (int i = 0, j = values.length - 1; i < j; i++, j--) {
+            long v = values[i];
+            values[i] = values[j];
+            values[j] = v;
+        }
+        return this;
+    }
+
+    /**
+     * <p>
+     * Keep the first occurrence of each value, in encounter order.
+     * </p>
+     * 
+     * @return {@code LongSelector}
+     */
+    public LongSelector distinct() {
+        var unique = values.clone();
+        Arrays.sort(unique);
+        int count = 0;
+        for (int i = 0; i < unique.length; i++) {
+            if (count == 0 || Long.compare(unique[count - 1], unique[i]) != 0)
+                unique[count++] = unique[i];
+        }
+        var seen = new boolean[count];
+        var result = new long[count];
+        int size = 0;
+        for (long v : values) {
+            int index = Arrays.binarySearch(unique, 0, count, v);
+            if (!seen[index]) {
+                seen[index] = true;
+                result[size++] = v;
+            }
+        }
+        values = result;
+        owned = true;
+        return this;
+    }
+
+    public long sum() {
+        long sum = 0;
+        for (long v : values) {
+            sum += v;
+        }
+        return sum;
+    }
+
+    public OptionalLong min() {
+        if (values.length == 0)
+            return OptionalLong.empty();
+        long min = values[0];
+        for (long v : values) {
+            min = Math.min(min, v);
+        }
+        return OptionalLong.of(min);
+    }
+
+    public OptionalLong max() {
+        if (values.length == 0)
+            return OptionalLong.empty();
+        long max = values[0];
+        for (long v : values) {
+            max = Math.max(max, v);
+        }
+        return OptionalLong.of(max);
+    }
+
+    public OptionalDouble average() {
+        if (values.length == 0)
+            return OptionalDouble.empty();
+        // accumulated as a double so the average does not overflow with the sum
+        double sum = 0;
+        for (long v : values) {
+            sum += v;
+        }
+        return OptionalDouble.of(sum / values.length);
+    }
+
+    public int count() {
+        return values.length;
+    }
+
+    /**
+     * <p>
+     * count, sum, min, max and average computed in a single pass.
+     * </p>
+     * 
+     * @return {@code LongSummaryStatistics}
+     */
+    public LongSummaryStatistics summaryStatistics() {
+        var statistics = new LongSummaryStatistics();
+        for (long v : values) {
+            statistics.accept(v);
+        }
+        return statistics;
+    }
+
+    public SingleSelector<Long> boxed() {
+        return new SingleSelector<>(LongStream.of(values).boxed().collect(Collectors.toList()));
+    }
+
+    public long[] toArray() {
+        return values.clone();
+    }
+}
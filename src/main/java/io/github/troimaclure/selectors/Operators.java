@@ -0,0 +1,49 @@
+package io.github.troimaclure.selectors;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Operator chain printed by {@code explain()}: each node points to the
+ * operators before it, so a derived selector shares its parent chain instead
+ * of copying it, and labels are only built when the chain is printed.
+ *
+ * @author ajosse
+ */
+final class Operators {
+    private final Operators parent;
+    private final Supplier<String> label;
+
+    private Operators(Operators parent, Supplier<String> label) {
+        this.parent = parent;
+        this.label = label;
+    }
+
+    static Operators of(Supplier<String> label) {
+        return new Operators(null, label);
+    }
+
+    Operators then(String label) {
+        return new Operators(this, () -> label);
+    }
+
+    Operators then(Supplier<String> label) {
+        return new Operators(this, label);
+    }
+
+    List<String> labels() {
+        var labels = new ArrayList<String>();
+        for (var node = this; node != null; node = node.parent) {
+            labels.add(node.label.get());
+        }
+        Collections.reverse(labels);
+        return labels;
+    }
+
+    @Override
+    public String toString() {
+        return String.join(System.lineSeparator() + " -> ", labels());
+    }
+}
@@ -0,0 +1,113 @@
+package io.github.troimaclure.selectors;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BiPredicate;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.apache.commons.lang3.tuple.Pair;
+
+/**
+ * Parallel equi-join used by {@link DualSelector#parallel()}: keys of both
+ * lists are extracted in parallel, positions are hash partitioned on their key
+ * so that matching elements always land in the same partition, then each
+ * partition builds and probes its own hash table on the fork-join pool.
+ * <ul>
+ * <li>ordered: each partition records the matches of its left positions, the
+ * pairs are then assembled in the sequential order (left order, then right
+ * order)</li>
+ * <li>unordered: each partition emits its pairs directly, partitions are
+ * concatenated</li>
+ * </ul>
+ *
+ * @author ajosse
+ */
+final class PartitionedJoin {
+
+    private PartitionedJoin() {
+    }
+
+    static <T, U, K> List<Pair<T, U>> join(List<T> left, List<U> right, Function<? super T, ? extends K> leftKey,
+            Function<? super U, ? extends K> rightKey, BiPredicate<T, U> residual, ForkJoinPool pool,
+            boolean unordered) {
+        int partitions = Integer.highestOneBit(Math.max(1, pool.getParallelism()) * 4);
+        return pool.submit(() -> {
+            var leftKeys = new Object[left.size()];
+            var rightKeys = new Object[right.size()];
+            Arrays.parallelSetAll(leftKeys, i -> leftKey.apply(left.get(i)));
+            Arrays.parallelSetAll(rightKeys, i -> rightKey.apply(right.get(i)));
+            var leftParts = scatter(leftKeys, partitions);
+            var rightParts = scatter(rightKeys, partitions);
+            if (unordered) {
+                return IntStream.range(0, partitions).parallel().mapToObj(p -> {
+                    var table = table(right, rightKeys, rightParts[p]);
+                    var pairs = new ArrayList<Pair<T, U>>();
+                    for (int i : leftParts[p]) {
+                        var bucket = table.get(leftKeys[i]);
+                        if (bucket == null)
+                            continue;
+                        var t1 = left.get(i);
+                        for (var u1 : bucket) {
+                            if (residual == null || residual.test(t1, u1))
+                                pairs.add(Pair.of(t1, u1));
+                        }
+                    }
+                    return pairs;
+                }).flatMap(List::stream).collect(Collectors.toList());
+            }
+            @SuppressWarnings({ "unchecked", "rawtypes" })
+            List<U>[] matches = new List[left.size()];
+            IntStream.range(0, partitions).parallel().forEach(p -> {
+                var table = table(right, rightKeys, rightParts[p]);
+                for (int i : leftParts[p]) {
+                    matches[i] = table.get(leftKeys[i]);
+                }
+            });
+            var pairs = new ArrayList<Pair<T, U>>();
+            for (int i = 0; i < matches.length; i++) {
+                if (matches[i] == null)
+                    continue;
+                var t1 = left.get(i);
+                for (var u1 : matches[i]) {
+                    if (residual == null || residual.test(t1, u1))
+                        pairs.add(Pair.of(t1, u1));
+                }
+            }
+            return pairs;
+        }).join();
+    }
+
+    private static <U> HashMap<Object, List<U>> table(List<U> right, Object[] rightKeys, int[] positions) {
+        var table = new HashMap<Object, List<U>>();
+        for (int j : positions) {
+            table.computeIfAbsent(rightKeys[j], k -> new ArrayList<>(1)).add(right.get(j));
+        }
+        return table;
+    }
+
+    // positions of each partition, in ascending order
+    private static int[][] scatter(Object[] keys, int partitions) {
+        var owner = new int[keys.length];
+        var counts = new int[partitions];
+        for (int i = 0; i < keys.length; i++) {
+            int hash = Objects.hashCode(keys[i]);
+            owner[i] = (hash ^ (hash >>> 16)) & (partitions - 1);
+            counts[owner[i]]++;
+        }
+        var parts = new int[partitions][];
+        for (int p = 0; p < partitions; p++) {
+            parts[p] = new int[counts[p]];
+        }
+        var filled = new int[partitions];
+        for (int i = 0; i < keys.length; i++) {
+            parts[owner[i]][filled[owner[i]]++] = i;
+        }
+        return parts;
+    }
+}
@@ -1,19 +1,49 @@
 package io.github.troimaclure.selectors;
 
+import java.io.IOException;
 import java.lang.reflect.Array;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.Spliterator;
 import java.util.Map.Entry;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+import java.util.function.UnaryOperator;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import io.github.troimaclure.exceptions.QException;
+import io.github.troimaclure.profiling.Profile;
+import io.github.troimaclure.profiling.ProfileListener;
+import io.github.troimaclure.profiling.RowCounter;
+import io.github.troimaclure.sinks.ChannelSink;
+import io.github.troimaclure.sinks.CsvFormatter;
+import io.github.troimaclure.sinks.JsonLinesFormatter;
+import io.github.troimaclure.sinks.RowFormatter;
+import io.github.troimaclure.spill.External;
+import io.github.troimaclure.spill.SpillConfig;
 
 /**
  *
@@ -21,19 +51,200 @@ import java.util.stream.Stream;
  */
 
 public class SingleSelector<T> {
+    public static final int PARALLEL_THRESHOLD = 8192;
+    // no key seen yet
+    private static final Object NONE = new Object();
+
     private List<T> list;
+    // operators recorded in lazy mode, null when list is up to date
+    private Supplier<Stream<T>> plan;
+    // last orderBy, applied by the next operator (or as a top-K by take)
+    private Comparator<T> pendingSort;
+    private String pendingSortName;
+    // keys of the pending sort, extracted once per element when it runs
+    private List<Sorting.Key<T>> pendingKeys;
+    // where the next thenBy key goes in pendingKeys
+    private int thenAt;
+    // the pending sort is only the primary key the list is already sorted by
+    private boolean pendingSorted;
+    // primary key of the last sort applied, cleared by operators appending
+    // elements (concat, union) and not carried by select, flat, groupBy...
+    private Sorting.Key<T> sortedBy;
+    private boolean lazy;
+    private ForkJoinPool pool;
+    private int threshold;
+    // null when profiling is off
+    Profile profile;
+    // null unless spill(config) was called, kept by operators that keep T
+    SpillConfig<T> spill;
+    // rows counted in the lazy plan, reported by the next terminal
+    private List<RowCounter> counters = new ArrayList<>();
+    Operators operators;
 
     public SingleSelector(List<T> list) {
         this.list = list;
+        int size = list.size();
+        this.operators = Operators.of(() -> "from list[" + size + "]");
     }
 
-    public SingleSelector<T> where(Predicate<T> p) {
-        this.list = list.stream().filter(p).collect(Collectors.toList());
+    /**
+     * <p>
+     * Lazy selector reading {@code source} on each terminal operator. After
+     * {@link #parallel(ForkJoinPool, int)} the source runs on the pool when its
+     * size is known and at least the threshold, a source of unknown size keeps
+     * its own parallelism.
+     * </p>
+     * 
+     * @param source
+     */
+    public SingleSelector(Supplier<Stream<T>> source) {
+        this(null, Operators.of(() -> "from source"));
+        this.plan = () -> open(source.get());
+    }
+
+    // lazy selector over a plan already built by another selector
+    SingleSelector(Supplier<Stream<T>> plan, Operators operators) {
+        this.plan = plan;
+        this.lazy = true;
+        this.operators = operators;
+    }
+
+    /**
+     * <h3>Usage</h3>
+     * 
+     * <pre>{@code
+     * var selector = Q.from(list).profile().where(e -> e.getId() > 10).orderBy(Product::getName);
+     * selector.toList();
+     * System.out.println(selector.getProfile());
+     * }</pre>
+     * <p>
+     * Record rows in / out, elapsed nanoseconds and allocated bytes of every
+     * operator run from now on (selectors created by select, groupBy... keep
+     * recording into the same profile). In lazy mode operators are fused, only
+     * their rows are known, the time is reported by the terminal operator.
+     * </p>
+     * 
+     * @return {@code SingleSelector<T>}
+     */
+    public SingleSelector<T> profile() {
+        return profile(new Profile());
+    }
+
+    public SingleSelector<T> profile(ProfileListener listener) {
+        return profile(new Profile().listen(listener));
+    }
+
+    public SingleSelector<T> profile(Profile profile) {
+        this.profile = profile;
+        return this;
+    }
+
+    public Profile getProfile() {
+        return profile;
+    }
+
+    /**
+     * <p>
+     * Operator chain of this selector, one operator per line.
+     * </p>
+     * 
+     * @return {@code String}
+     */
+    public String explain() {
+        if (pendingSort == null)
+            return operators.toString();
+        return operators.then(pendingSortName + (pendingSorted ? " (already sorted)" : " (pending)")).toString();
+    }
+
+    /**
+     * <h3>Usage</h3>
+     * 
+     * <pre>{@code
+     * Q.from(list).lazy().where(e -> e.getId() > 10).select(Product::getName).firstOrDefault();
+     * }</pre>
+     * <p>
+     * Switch to deferred execution: intermediate operators (where, select,
+     * orderBy, distinct, concat...) only record a plan, which runs as a single
+     * fused pass when a terminal operator is called. Short-circuiting terminals
+     * (firstOrDefault, any, all...) stop reading the source as soon as they have
+     * their answer.
+     * </p>
+     * <b>Every terminal replays the plan, call toList() to run it once and keep
+     * the result.</b>
+     * 
+     * @return {@code SingleSelector<T>}
+     */
+    public SingleSelector<T> lazy() {
+        this.lazy = true;
+        return this;
+    }
+
+    /**
+     * <h3>Usage</h3>
+     * 
+     * <pre>{@code
+     * Q.from(bigList).parallel().where(e -> e.getId() > 10).select(Product::getName).toList();
+     * }</pre>
+     * <p>
+     * Run operators on the common fork-join pool, lists smaller than
+     * {@value #PARALLEL_THRESHOLD} elements stay sequential.
+     * </p>
+     * 
+     * @return {@code SingleSelector<T>}
+     */
+    public SingleSelector<T> parallel() {
+        return parallel(ForkJoinPool.commonPool(), PARALLEL_THRESHOLD);
+    }
+
+    /**
+     * <p>
+     * Run operators on {@code pool} when the source holds at least
+     * {@code threshold} elements. Encounter order is kept wherever the sequential
+     * operator keeps it (where, select, flat, orderBy, distinct, groupBy lists,
+     * toList). Collections and sized streams are measured the same way as
+     * lists, iterators and streams of unknown size keep their own parallelism.
+     * </p>
+     * 
+     * @param pool
+     * @param threshold
+     * @return {@code SingleSelector<T>}
+     */
+    public SingleSelector<T> parallel(ForkJoinPool pool, int threshold) {
+        this.pool = pool;
+        this.threshold = threshold;
         return this;
     }
 
+    /**
+     * <h3>Usage</h3>
+     * 
+     * <pre>{@code
+     * var config = new SpillConfig<>(RecordSerializer.strings(), 1_000_000);
+     * Q.from(lines).spill(config).orderBy(Function.identity()).foreach(writer::println);
+     * }</pre>
+     * <p>
+     * Bound the memory of orderBy, orderByDesc, distinct and groupBy: past
+     * {@code maxRowsInMemory} rows they write sorted runs / hash partitions to
+     * temporary files and merge them back as a stream (see {@link External}).
+     * Implies {@link #lazy()}, so that a streaming terminal (foreach, first...)
+     * never holds the whole result. Operators changing the element type
+     * (select, flat...) leave spill mode.
+     * </p>
+     * 
+     * @param config
+     * @return {@code SingleSelector<T>}
+     */
+    public SingleSelector<T> spill(SpillConfig<T> config) {
+        this.spill = config;
+        return lazy();
+    }
+
+    public SingleSelector<T> where(Predicate<T> p) {
+        return pipe("where", s -> s.filter(p));
+    }
+
     public T firstOrDefault(Predicate<T> p, T def) {
-        return list.stream().filter(p).findFirst().orElse(def);
+        return run("firstOrDefault", s -> s.filter(p).findFirst().orElse(def));
     }
 
     public T firstOrDefault(Predicate<T> p) {
@@ -41,11 +252,11 @@ public class SingleSelector<T> {
     }
 
     public T firstOrDefault() {
-        return list.stream().findFirst().orElse(null);
+        return run("firstOrDefault", s -> s.findFirst().orElse(null));
     }
 
     public Optional<T> first(Predicate<T> p) {
-        return list.stream().filter(p).findFirst();
+        return run("first", s -> s.filter(p).findFirst());
     }
 
     public T firstOrThrow(Predicate<T> p, RuntimeException ex) {
@@ -56,41 +267,198 @@ public class SingleSelector<T> {
     }
 
     public SingleSelector<T> foreach(Consumer<T> c) {
-        for (T t : list) {
+        if (plan != null || pool != null || profile != null) {
+            run("foreach", s -> {
+                s.forEachOrdered(c);
+                return null;
+            });
+            return this;
+        }
+        for (T t : list()) {
             c.accept(t);
         }
         return this;
     }
 
     public <K> SingleSelector<K> select(Function<T, K> func) {
-        List<K> collect = this.list.stream().map(e -> func.apply((T) e)).collect(Collectors.toList());
-        return new SingleSelector<K>(collect);
+        return derive("select", s -> s.map(func));
     }
 
-    public <U extends Comparable<? super U>> SingleSelector<T> orderBy(Function<? super T, ? extends U> keyExtractor) {
-        this.list = this.list.stream().sorted(Comparator.comparing(keyExtractor)).collect(Collectors.toList());
+    /**
+     * <h3>Usage</h3>
+     * 
+     * <pre>{@code
+     * Q.from(rows).lazy().where(Row::isValid).chunk(500).foreach(repository::insertAll);
+     * }</pre>
+     * <p>
+     * Consecutive lists of {@code size} elements (the last one may be shorter),
+     * in order. In lazy mode the batches are pulled from the source one at a
+     * time, so only the current batch is held in memory.
+     * </p>
+     * 
+     * @param size
+     * @return {@code SingleSelector<List<T>>}
+     */
+    public SingleSelector<List<T>> chunk(int size) {
+        return derive("chunk " + size, s -> Batching.chunks(s, size, Long.MAX_VALUE));
+    }
+
+    /**
+     * <h3>Usage</h3>
+     * 
+     * <pre>{@code
+     * Q.from(rows).lazy().foreachBatch(500, repository::insertAll);
+     * }</pre>
+     * <p>
+     * Pass the elements to {@code c} in batches of {@code size} (the last one
+     * may be shorter), a new list per batch. Only the current batch is held
+     * in memory on a lazy selector.
+     * </p>
+     * 
+     * @param size
+     * @param c
+     * @return {@code SingleSelector<T>}
+     */
+    public SingleSelector<T> foreachBatch(int size, Consumer<List<T>> c) {
+        return foreachBatch(size, null, c);
+    }
+
+    /**
+     * <h3>Usage</h3>
+     * 
+     * <pre>{@code
+     * Q.from(queueIterator).foreachBatch(1000, Duration.ofMillis(200), sink::send);
+     * }</pre>
+     * <p>
+     * Same as {@link #foreachBatch(int, Consumer)}, a batch is also flushed once
+     * an element arrives more than {@code maxDelay} after its first element, so
+     * a slow source does not hold rows back for a whole batch. The source is
+     * pulled, there is no timer: a pending batch is flushed by the next
+     * element after the delay, or at the end of the source.
+     * </p>
+     * 
+     * @param size
+     * @param maxDelay null to flush on size only
+     * @param c
+     * @return {@code SingleSelector<T>}
+     */
+    public SingleSelector<T> foreachBatch(int size, Duration maxDelay, Consumer<List<T>> c) {
+        long maxNanos = maxDelay == null ? Long.MAX_VALUE : maxDelay.toNanos();
+        run("foreachBatch", s -> {
+            Batching.chunks(s, size, maxNanos).forEachOrdered(c);
+            return null;
+        });
+        return this;
+    }
+
+    /**
+     * <h3>Usage</h3>
+     * 
+     * <pre>{@code
+     * Q.from(orders).selectAsync(o -> customerService.find(o.getCustomerId()), 32).toList();
+     * }</pre>
+     * <p>
+     * Same as {@link #select(Function)} for blocking calls: up to
+     * {@code maxConcurrency} calls run at the same time on a virtual thread per
+     * call when the runtime has them (Java 21+), on a pool of
+     * {@code maxConcurrency} threads otherwise. Results keep the input order.
+     * The first failure cancels the calls still running and is thrown.
+     * </p>
+     * 
+     * @param <K>
+     * @param func
+     * @param maxConcurrency
+     * @return {@code SingleSelector<K>}
+     */
+    public <K> SingleSelector<K> selectAsync(Function<T, K> func, int maxConcurrency) {
+        return selectAsync(func, maxConcurrency, null);
+    }
+
+    /**
+     * Same as {@link #selectAsync(Function, int)}, the calls run on
+     * {@code executor} (never shut down here).
+     * 
+     * @param <K>
+     * @param func
+     * @param maxConcurrency
+     * @param executor
+     * @return {@code SingleSelector<K>}
+     */
+    public <K> SingleSelector<K> selectAsync(Function<T, K> func, int maxConcurrency, Executor executor) {
+        return derive("selectAsync", s -> {
+            return barrier(s, () -> Async.map(s.collect(Collectors.toList()), func, maxConcurrency, executor));
+        });
+    }
+
+    /**
+     * <p>
+     * {@link #foreach(Consumer)} running up to {@code maxConcurrency} calls at
+     * the same time, see {@link #selectAsync(Function, int)}. Calls are started
+     * in order but may end in any order, returns once they are all done.
+     * </p>
+     * 
+     * @param c
+     * @param maxConcurrency
+     * @return {@code SingleSelector<T>}
+     */
+    public SingleSelector<T> foreachAsync(Consumer<T> c, int maxConcurrency) {
+        return foreachAsync(c, maxConcurrency, null);
+    }
+
+    public SingleSelector<T> foreachAsync(Consumer<T> c, int maxConcurrency, Executor executor) {
+        run("foreachAsync", s -> Async.map(s.collect(Collectors.toList()), t -> {
+            c.accept(t);
+            return null;
+        }, maxConcurrency, executor));
         return this;
     }
 
+    /**
+     * <h3>Usage</h3>
+     * 
+     * <pre>{@code
+     * Q.from(products).selectInt(Product::getId).where(e -> e > 10).sum();
+     * }</pre>
+     * <p>
+     * Project to an {@code int[]} backed selector, values are never boxed.
+     * </p>
+     * 
+     * @param func
+     * @return {@code IntSelector}
+     */
+    public IntSelector selectInt(ToIntFunction<? super T> func) {
+        return new IntSelector(run("selectInt", s -> s.mapToInt(func).toArray()));
+    }
+
+    public LongSelector selectLong(ToLongFunction<? super T> func) {
+        return new LongSelector(run("selectLong", s -> s.mapToLong(func).toArray()));
+    }
+
+    public DoubleSelector selectDouble(ToDoubleFunction<? super T> func) {
+        return new DoubleSelector(run("selectDouble", s -> s.mapToDouble(func).toArray()));
+    }
+
+    public <U extends Comparable<? super U>> SingleSelector<T> orderBy(Function<? super T, ? extends U> keyExtractor) {
+        return sort("orderBy", new Sorting.Key<T>(keyExtractor, null, false));
+    }
+
     public <U extends Comparable<Double>> Double sumDouble(Function<? super T, Double> keyExtractor) {
-        return this.list.stream().reduce(0d, (subtotal, add) -> subtotal + keyExtractor.apply(add),
-                Double::sum);
+        return run("sumDouble", s -> s.reduce(0d, (subtotal, add) -> subtotal + keyExtractor.apply(add),
+                Double::sum));
     }
 
     public <U extends Comparable<Long>> Long sumLong(Function<? super T, Long> keyExtractor) {
-        return this.list.stream().reduce(0L, (subtotal, add) -> subtotal + keyExtractor.apply(add), Long::sum);
+        return run("sumLong", s -> s.reduce(0L, (subtotal, add) -> subtotal + keyExtractor.apply(add), Long::sum));
     }
 
     public <U extends Comparable<Integer>> Integer sumInteger(Function<? super T, Integer> keyExtractor) {
-        return this.list.stream().reduce(0, (subtotal, add) -> subtotal + keyExtractor.apply(add),
-                Integer::sum);
+        return run("sumInteger", s -> s.reduce(0, (subtotal, add) -> subtotal + keyExtractor.apply(add),
+                Integer::sum));
     }
 
     public <U extends Comparable<? super U>> SingleSelector<T> orderBy(Function<? super T, ? extends U> keyExtractor,
             Comparator<? super U> comparator) {
-        this.list = this.list.stream().sorted(Comparator.comparing(keyExtractor, comparator))
-                .collect(Collectors.toList());
-        return this;
+        return sort("orderBy", new Sorting.Key<T>(keyExtractor, comparator, false));
     }
 
     public String toString(Function<? super T, String> keyExtractor) {
@@ -98,45 +466,259 @@ public class SingleSelector<T> {
     }
 
     public String toString(Function<? super T, String> keyExtractor, String separator) {
-        return list.stream().map(e -> keyExtractor.apply(e)).collect(Collectors.joining(separator));
+        return run("toString", s -> s.map(e -> keyExtractor.apply(e)).collect(Collectors.joining(separator)));
+    }
+
+    /**
+     * <h3>Usage</h3>
+     * 
+     * <pre>{@code
+     * var csv = new CsvFormatter<Product>().column("id", Product::getId).column("name", Product::getName);
+     * Q.from(products).where(p -> p.getId() > 10).writeTo(Path.of("products.csv"), csv);
+     * }</pre>
+     * <p>
+     * Write the elements with {@code formatter} (see {@link CsvFormatter},
+     * {@link JsonLinesFormatter}) in UTF-8, through a reused direct buffer
+     * flushed as it fills: memory stays constant whatever the output size
+     * (the elements themselves are streamed in lazy mode).
+     * </p>
+     * 
+     * @param path      created or truncated
+     * @param formatter
+     * @return bytes written
+     */
+    public long writeTo(Path path, RowFormatter<? super T> formatter) {
+        try (var channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE)) {
+            return writeTo(channel, formatter);
+        } catch (IOException e) {
+            throw new QException("Cannot write " + path + ": " + e.getMessage(), "SINK_EX");
+        }
+    }
+
+    /**
+     * Same as {@link #writeTo(Path, RowFormatter)}, {@code channel} is left
+     * open.
+     * 
+     * @param channel
+     * @param formatter
+     * @return bytes written
+     */
+    public long writeTo(WritableByteChannel channel, RowFormatter<? super T> formatter) {
+        return run("writeTo", s -> ChannelSink.write(s, formatter, channel));
     }
 
     public <U> DualSelector<T, U> join(List<U> uList) {
-        return new DualSelector<>(list, uList);
+        var dual = new DualSelector<T, U>(list(), uList);
+        dual.profile = profile;
+        int size = uList.size();
+        dual.operators = operators.then(() -> "join list[" + size + "]");
+        return dual;
     }
 
     public <U extends Comparable<? super U>> SingleSelector<T> orderByDesc(
             Function<? super T, ? extends U> keyExtractor) {
-        this.list = this.list.stream().sorted(Comparator.comparing(keyExtractor).reversed())
-                .collect(Collectors.toList());
-        return this;
+        return sort("orderByDesc", new Sorting.Key<T>(keyExtractor, null, true));
     }
 
     public <U extends Comparable<? super U>> SingleSelector<T> orderByDesc(
             Function<? super T, ? extends U> keyExtractor, Comparator<? super U> comparator) {
-        this.list = this.list.stream().sorted(Comparator.comparing(keyExtractor, comparator).reversed())
-                .collect(Collectors.toList());
-        return this;
+        return sort("orderByDesc", new Sorting.Key<T>(keyExtractor, comparator, true));
+    }
+
+    /**
+     * <h3>Usage</h3>
+     * 
+     * <pre>{@code
+     * Q.from(products).orderBy(Product::getId_category).thenByDesc(Product::getPrice).thenBy(Product::getName);
+     * }</pre>
+     * <p>
+     * Secondary key of the orderBy / orderByDesc just before: elements with
+     * equal previous keys are ordered by this one. All the keys are applied in
+     * a single stable sort, each key being computed once per element.
+     * </p>
+     * Throws a {@code ORDER_EX} QException when no orderBy is pending.
+     * 
+     * @param <U>
+     * @param keyExtractor
+     * @return {@code SingleSelector<T>}
+     */
+    public <U extends Comparable<? super U>> SingleSelector<T> thenBy(Function<? super T, ? extends U> keyExtractor) {
+        return then("thenBy", new Sorting.Key<T>(keyExtractor, null, false));
+    }
+
+    public <U> SingleSelector<T> thenBy(Function<? super T, ? extends U> keyExtractor,
+            Comparator<? super U> comparator) {
+        return then("thenBy", new Sorting.Key<T>(keyExtractor, comparator, false));
+    }
+
+    public <U extends Comparable<? super U>> SingleSelector<T> thenByDesc(
+            Function<? super T, ? extends U> keyExtractor) {
+        return then("thenByDesc", new Sorting.Key<T>(keyExtractor, null, true));
+    }
+
+    public <U> SingleSelector<T> thenByDesc(Function<? super T, ? extends U> keyExtractor,
+            Comparator<? super U> comparator) {
+        return then("thenByDesc", new Sorting.Key<T>(keyExtractor, comparator, true));
+    }
+
+    /**
+     * <h3>Usage</h3>
+     * 
+     * <pre>{@code
+     * Q.from(products).orderByDesc(Product::getPrice).take(20).toList();
+     * }</pre>
+     * <p>
+     * Keep the first {@code n} elements. Directly after orderBy / orderByDesc,
+     * only the {@code n} smallest elements are kept in a bounded heap instead of
+     * sorting the whole list (same order as the full stable sort).
+     * </p>
+     * 
+     * @param n
+     * @return {@code SingleSelector<T>}
+     */
+    public SingleSelector<T> take(int n) {
+        if (n < 0)
+            throw new QException("take count must not be negative: " + n, "TAKE_EX");
+        // keeping every element is the plain keyed sort, so is an already
+        // sorted list
+        if (pendingSort != null && (pendingSorted || plan == null && n >= list.size()))
+            flushSort();
+        if (pendingSort != null) {
+            Comparator<T> comparator = pendingSort;
+            sortedBy = pendingKeys.get(0);
+            pendingSort = null;
+            pendingKeys = null;
+            return pipe("take (top-K " + pendingSortName + ")", s -> barrier(s, () -> Sorting.topK(s, comparator, n)));
+        }
+        return pipe("take", s -> s.limit(n));
+    }
+
+    /**
+     * <h3>Usage</h3>
+     * 
+     * <pre>{@code
+     * Function<Product, Integer> byId = Product::getId;
+     * var sorted = Q.from(products).orderBy(byId);
+     * sorted.between(10, 20).toList();
+     * sorted.floor(15);
+     * }</pre>
+     * <p>
+     * Elements whose sort key is from {@code from} (inclusive) to {@code to}
+     * (exclusive) in the order of the last orderBy / orderByDesc (so
+     * {@code from} is the higher key after orderByDesc), found by binary search
+     * in O(log n). The selector stays sorted, operators keeping the order
+     * (where, distinct, take, skip...) keep it sorted.
+     * </p>
+     * Throws a {@code SORT_EX} QException when the selector is not sorted.
+     * 
+     * @param <U>
+     * @param from
+     * @param to
+     * @return {@code SingleSelector<T>}
+     */
+    public <U> SingleSelector<T> between(U from, U to) {
+        var sorted = list();
+        int start = lowerBound(from);
+        int end = Math.max(start, lowerBound(to));
+        var selector = new SingleSelector<T>(sorted.subList(start, end));
+        selector.sortedBy = sortedBy;
+        selector.pool = pool;
+        selector.threshold = threshold;
+        selector.profile = profile;
+        selector.operators = operators.then("between (binary search)");
+        return selector;
+    }
+
+    /**
+     * @param key
+     * @return index of the first element whose sort key is not before key
+     */
+    public <U> int lowerBound(U key) {
+        return search(key, false);
+    }
+
+    /**
+     * @param key
+     * @return index of the first element whose sort key is after key
+     */
+    public <U> int upperBound(U key) {
+        return search(key, true);
+    }
+
+    /**
+     * @param key
+     * @return last element whose sort key is before or equal to key, null when
+     *         none
+     */
+    public <U> T floor(U key) {
+        int index = upperBound(key) - 1;
+        return index < 0 ? null : list.get(index);
+    }
+
+    /**
+     * @param key
+     * @return first element whose sort key is equal to or after key, null when
+     *         none
+     */
+    public <U> T ceiling(U key) {
+        int index = lowerBound(key);
+        return index < list.size() ? list.get(index) : null;
+    }
+
+    private int search(Object key, boolean upper) {
+        var sorted = list();
+        if (sortedBy == null)
+            throw new QException("The selector is not sorted, call orderBy first", "SORT_EX");
+        int low = 0;
+        int high = sorted.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            int c = sortedBy.compareKey(sortedBy.extractor.apply(sorted.get(middle)), key);
+            if (c < 0 || (upper && c == 0))
+                low = middle + 1;
+            else
+                high = middle;
+        }
+        return low;
+    }
+
+    public SingleSelector<T> skip(int n) {
+        return pipe("skip", s -> s.skip(n));
+    }
+
+    public SingleSelector<T> takeWhile(Predicate<T> p) {
+        return pipe("takeWhile", s -> s.takeWhile(p));
+    }
+
+    public SingleSelector<T> skipWhile(Predicate<T> p) {
+        return pipe("skipWhile", s -> s.dropWhile(p));
     }
 
     public SingleSelector<T> concat(SingleSelector<T> single) {
-        this.list = Stream.concat(this.list.stream(), single.toList().stream()).collect(Collectors.toList());
-        return this;
+        if (!lazy)
+            return concat(single.toList());
+        unsorted();
+        return pipe("concat", s -> Stream.concat(s, single.stream()));
     }
 
     public SingleSelector<T> concat(List<T> list) {
-        this.list = Stream.concat(this.list.stream(), list.stream()).collect(Collectors.toList());
-        return this;
+        unsorted();
+        return pipe("concat", s -> Stream.concat(s, list.stream()));
     }
 
     public <R> SingleSelector<R> flat(Function<T, List<R>> func) {
+        if (lazy || pool != null || profile != null)
+            return derive("flat", s -> s.flatMap(e -> func.apply(e).stream()));
 
         List<R> newlist = new ArrayList<R>();
-        for (T t : this.list) {
+        for (T t : list()) {
             newlist.addAll(func.apply(t));
         }
 
-        return new SingleSelector<R>(newlist);
+        var selector = new SingleSelector<R>(newlist);
+        selector.operators = operators.then("flat");
+        return selector;
     }
 
     private Predicate<T> predicateDistinct(Function<? super T, ?> keyExtractor) {
@@ -144,53 +726,410 @@ public class SingleSelector<T> {
         return t -> seen.add(keyExtractor.apply(t));
     }
 
+    // parallel distinct keeps the first element of each key in encounter order
+    private Stream<T> distinctOrdered(Stream<T> stream, Function<? super T, ?> keyExtractor) {
+        Function<T, Object> key = keyExtractor::apply;
+        return barrier(stream, () -> new ArrayList<>(stream
+                .collect(Collectors.toMap(key, Function.identity(), (a, b) -> a, LinkedHashMap::new)).values()));
+    }
+
+    private Stream<T> unique(Stream<T> stream, Function<? super T, ?> keyExtractor) {
+        return stream.isParallel() ? distinctOrdered(stream, keyExtractor)
+                : stream.filter(this.predicateDistinct(keyExtractor));
+    }
+
+    private static <U, K> Set<K> keys(List<U> list, Function<? super U, K> keyExtractor) {
+        Set<K> keys = new HashSet<>(Math.max(16, (int) (list.size() / .75f) + 1));
+        for (U u : list) {
+            keys.add(keyExtractor.apply(u));
+        }
+        return keys;
+    }
+
     public SingleSelector<T> distinct(Function<? super T, ?> keyExtractor) {
-        this.list = this.list.stream().filter(this.predicateDistinct(keyExtractor)).collect(Collectors.toList());
-        return this;
+        var config = spill;
+        if (config != null)
+            return pipe("distinct (spill)", s -> External.distinct(s, keyExtractor, config));
+        return pipe("distinct", s -> unique(s, keyExtractor));
+    }
+
+    /**
+     * <h3>Usage</h3>
+     * 
+     * <pre>{@code
+     * Q.from(products).union(otherProducts).toList();
+     * }</pre>
+     * <p>
+     * Distinct elements of this selector followed by the distinct elements of
+     * {@code other} not already seen (first occurrence order).
+     * </p>
+     * 
+     * @param other
+     * @return {@code SingleSelector<T>}
+     */
+    public SingleSelector<T> union(List<T> other) {
+        unsorted();
+        return pipe("union", s -> unique(Stream.concat(s, other.stream()), Function.identity()));
+    }
+
+    /**
+     * <h3>Usage</h3>
+     * 
+     * <pre>{@code
+     * Q.from(products).intersect(otherProducts).toList();
+     * }</pre>
+     * <p>
+     * Distinct elements of this selector also contained in {@code other}.
+     * {@code other} is hashed once, O(n + m).
+     * </p>
+     * 
+     * @param other
+     * @return {@code SingleSelector<T>}
+     */
+    public SingleSelector<T> intersect(List<T> other) {
+        return pipe("intersect", s -> {
+            var set = keys(other, Function.identity());
+            return unique(s.filter(set::contains), Function.identity());
+        });
+    }
+
+    /**
+     * <h3>Usage</h3>
+     * 
+     * <pre>{@code
+     * Q.from(products).except(soldOut).toList();
+     * }</pre>
+     * <p>
+     * Distinct elements of this selector not contained in {@code other}.
+     * {@code other} is hashed once, O(n + m).
+     * </p>
+     * 
+     * @param other
+     * @return {@code SingleSelector<T>}
+     */
+    public SingleSelector<T> except(List<T> other) {
+        return exceptBy(other, Function.identity());
+    }
+
+    /**
+     * <h3>Usage</h3>
+     * 
+     * <pre>{@code
+     * Q.from(products).exceptBy(soldOut, Product::getId).toList();
+     * }</pre>
+     * <p>
+     * Elements of this selector whose key is not a key of {@code other}, first
+     * element per key.
+     * </p>
+     * 
+     * @param other
+     * @param keyExtractor
+     * @return {@code SingleSelector<T>}
+     */
+    public SingleSelector<T> exceptBy(List<T> other, Function<? super T, ?> keyExtractor) {
+        return pipe("exceptBy", s -> {
+            var set = keys(other, keyExtractor);
+            return unique(s.filter(t -> !set.contains(keyExtractor.apply(t))), keyExtractor);
+        });
+    }
+
+    /**
+     * <h3>Usage</h3>
+     * 
+     * <pre>{@code
+     * Q.from(products).whereIn(categories, Product::getId_category, Category::getId).toList();
+     * }</pre>
+     * <p>
+     * Semi-join: keeps the elements whose key matches a key of {@code other},
+     * without duplicating them. {@code other} is hashed once, O(n + m).
+     * </p>
+     * 
+     * @param other
+     * @param leftKey
+     * @param rightKey
+     * @return {@code SingleSelector<T>}
+     */
+    public <U, K> SingleSelector<T> whereIn(List<U> other, Function<? super T, K> leftKey,
+            Function<? super U, K> rightKey) {
+        return pipe("whereIn", s -> {
+            var set = keys(other, rightKey);
+            return s.filter(t -> set.contains(leftKey.apply(t)));
+        });
+    }
+
+    /**
+     * <h3>Usage</h3>
+     * 
+     * <pre>{@code
+     * Q.from(categories).whereNotIn(products, Category::getId, Product::getId_category).toList();
+     * }</pre>
+     * <p>
+     * Anti-join: keeps the elements whose key matches no key of {@code other}.
+     * </p>
+     * 
+     * @param other
+     * @param leftKey
+     * @param rightKey
+     * @return {@code SingleSelector<T>}
+     */
+    public <U, K> SingleSelector<T> whereNotIn(List<U> other, Function<? super T, K> leftKey,
+            Function<? super U, K> rightKey) {
+        return pipe("whereNotIn", s -> {
+            var set = keys(other, rightKey);
+            return s.filter(t -> !set.contains(leftKey.apply(t)));
+        });
     }
 
     public boolean contains(T t) {
-        return this.list.stream().anyMatch(e -> e.equals(t));
+        return run("contains", s -> s.anyMatch(e -> e.equals(t)));
     }
 
+    // single pass, every key is compared to the first one seen (any element
+    // works as the reference, so parallel streams need no ordering)
     public boolean allSame(Function<? super T, ?> keyExtractor) {
-        var first = list.stream().findFirst();
-        if (!first.isPresent())
-            return false;
-        for (T t : list) {
-            if (!keyExtractor.apply(t).equals(keyExtractor.apply(first.get()))) {
-                return false;
-            }
-        }
-        return true;
+        var reference = new AtomicReference<Object>(NONE);
+        boolean same = run("allSame", s -> s.allMatch(t -> {
+            var key = keyExtractor.apply(t);
+            return reference.compareAndSet(NONE, key) || Objects.equals(reference.get(), key);
+        }));
+        return same && reference.get() != NONE;
     }
 
-    public <K> SingleSelector<Entry<K, List<T>>> groupBy(Function<? super T, K> keyExtractor) {
-        var list = this.list.stream().collect(Collectors.groupingBy(keyExtractor)).entrySet().stream()
-                .collect(Collectors.toList());
-        return new SingleSelector<Entry<K, List<T>>>(list);
+    /**
+     * <h3>Usage</h3>
+     * 
+     * <pre>{@code
+     * Q.from(products).groupBy(Product::getId_category).toList();
+     * Q.from(products).groupBy(Product::getId_category).count().toMap(Entry::getKey, Entry::getValue);
+     * }</pre>
+     * <p>
+     * Group elements by key. The groups are only built when the result is used
+     * as a {@code SingleSelector<Entry<K, List<T>>>}, the aggregates of
+     * {@link GroupSelector} (count, longSum, min...) fold each element into its
+     * group accumulator without building the group lists. Returns a
+     * {@link GroupSelector} since 0.1.0, code compiled against 0.0.1 must be
+     * recompiled.
+     * </p>
+     * 
+     * @param <K>
+     * @param keyExtractor
+     * @return {@code GroupSelector<K, T>}
+     */
+    public <K> GroupSelector<K, T> groupBy(Function<? super T, K> keyExtractor) {
+        var source = new SingleSelector<T>(source(), operators);
+        source.spill = spill;
+        source.pool = pool;
+        source.threshold = threshold;
+        source.profile = profile;
+        source.counters = new ArrayList<>(counters);
+        var groups = new GroupSelector<K, T>(source, keyExtractor);
+        SingleSelector<Entry<K, List<T>>> selector = groups;
+        selector.lazy = lazy;
+        selector.pool = pool;
+        selector.threshold = threshold;
+        selector.profile = profile;
+        selector.counters = source.counters;
+        selector.operators = operators.then(spill == null ? "groupBy" : "groupBy (spill)");
+        return groups;
     }
 
     public boolean any(Predicate<T> p) {
-        return this.list.stream().anyMatch(p);
+        return run("any", s -> s.anyMatch(p));
     }
 
     public boolean all(Predicate<T> p) {
-        return this.list.stream().allMatch(p);
+        return run("all", s -> s.allMatch(p));
     }
 
     public List<T> toList() {
-        return this.list;
+        return list();
     }
 
     public <K, E> Map<K, E> toMap(Function<? super T, K> keyExtractor, Function<? super T, E> keyExtractor2) {
-        return this.list.stream().collect(Collectors.toMap(keyExtractor, keyExtractor2));
+        return run("toMap", s -> s.collect(Collectors.toMap(keyExtractor, keyExtractor2)));
     }
 
     // need class to be send to avoir primitive try transform
     public T[] toArray(Class<T> c) {
-        var array = (T[]) Array.newInstance(c, this.list.size());
-        return this.list.toArray(array);
+        var list = list();
+        var array = (T[]) Array.newInstance(c, list.size());
+        return list.toArray(array);
+    }
+
+    // source of every operator : the recorded plan in lazy mode, the list
+    // otherwise
+    Stream<T> stream() {
+        flushSort();
+        if (plan != null && !lazy)
+            materialize();
+        return plan != null ? plan.get() : open(list);
+    }
+
+    private Stream<T> open(List<T> source) {
+        return pool != null && source.size() >= threshold ? source.parallelStream() : source.stream();
+    }
+
+    private Stream<T> open(Stream<T> source) {
+        if (pool == null)
+            return source;
+        boolean parallel = source.isParallel();
+        var spliterator = source.spliterator();
+        long size = spliterator.getExactSizeIfKnown();
+        return StreamSupport.stream(spliterator, size < 0 ? parallel : size >= threshold).onClose(source::close);
+    }
+
+    // parallel streams run on the pool of the thread calling the terminal
+    // operator
+    <R> R run(String operator, Function<Stream<T>, R> terminal) {
+        var stream = stream();
+        return measure(operator, plan == null ? list.size() : -1, () -> execute(stream, terminal));
+    }
+
+    private <R> R measure(String operator, long rowsIn, Supplier<R> body) {
+        if (profile == null)
+            return body.get();
+        return profile.measure(operator, rowsIn, body, counters);
+    }
+
+    // closing the stream releases what its operators hold (spill files)
+    private <R> R execute(Stream<T> stream, Function<Stream<T>, R> terminal) {
+        try (stream) {
+            // a parallel source stream without parallel(pool) runs where it is
+            if (!stream.isParallel() || pool == null)
+                return terminal.apply(stream);
+            return pool.submit(() -> terminal.apply(stream)).join();
+        }
+    }
+
+    // defers a blocking step (grouping, ordered distinct) until the terminal
+    // operator starts, so that it runs inside the fork-join pool, closing it
+    // closes upstream
+    static <K> Stream<K> barrier(Stream<?> upstream, Supplier<ArrayList<K>> step) {
+        return StreamSupport.stream(() -> step.get().spliterator(),
+                Spliterator.ORDERED | Spliterator.SIZED | Spliterator.SUBSIZED, upstream.isParallel())
+                .onClose(upstream::close);
+    }
+
+    private List<T> list() {
+        flushSort();
+        if (plan != null)
+            materialize();
+        return list;
+    }
+
+    // runs the pending plan once and keeps the result
+    private void materialize() {
+        var stream = plan.get();
+        list = measure("toList", -1, () -> execute(stream, s -> s.collect(Collectors.toList())));
+        plan = null;
+        counters = new ArrayList<>();
+    }
+
+    private Supplier<Stream<T>> source() {
+        flushSort();
+        if (plan != null)
+            return plan;
+        var source = list;
+        return () -> open(source);
+    }
+
+    private void unsorted() {
+        flushSort();
+        sortedBy = null;
+    }
+
+    private SingleSelector<T> sort(String operator, Sorting.Key<T> key) {
+        if (pendingKeys != null && pendingKeys.get(0).same(key)) {
+            // the pending secondary keys now only break the ties of the next thenBy
+            thenAt = 1;
+            return this;
+        }
+        boolean sorted = pendingKeys == null && sortedBy != null && sortedBy.same(key);
+        flushSort();
+        pendingKeys = new ArrayList<>();
+        pendingKeys.add(key);
+        thenAt = 1;
+        pendingSorted = sorted;
+        pendingSort = key.comparator();
+        pendingSortName = operator;
+        return this;
+    }
+
+    private SingleSelector<T> then(String operator, Sorting.Key<T> key) {
+        if (pendingSort == null)
+            throw new QException(operator + " must follow orderBy, orderByDesc or thenBy", "ORDER_EX");
+        pendingKeys.add(thenAt++, key);
+        pendingSorted = false;
+        Comparator<T> comparator = pendingKeys.get(0).comparator();
+        for (int i = 1; i < pendingKeys.size(); i++) {
+            comparator = comparator.thenComparing(pendingKeys.get(i).comparator());
+        }
+        pendingSort = comparator;
+        pendingSortName += ", " + operator;
+        return this;
+    }
+
+    private void flushSort() {
+        if (pendingSort == null)
+            return;
+        Comparator<T> comparator = pendingSort;
+        var keys = pendingKeys;
+        pendingSort = null;
+        pendingKeys = null;
+        sortedBy = keys.get(0);
+        if (pendingSorted) {
+            // sorting again on the primary key of the current order changes nothing
+            pendingSorted = false;
+            var name = pendingSortName;
+            operators = operators.then(() -> name + " (already sorted)");
+            return;
+        }
+        var config = spill;
+        if (config != null)
+            pipe(pendingSortName + " (spill)", s -> External.sort(s, comparator, config));
+        else
+            pipe(pendingSortName,
+                    s -> barrier(s, () -> Sorting.sortByKeys(s.collect(Collectors.toList()), keys, s.isParallel())));
+    }
+
+    // records the operator in lazy mode, applies it straight away otherwise
+    private SingleSelector<T> pipe(String name, UnaryOperator<Stream<T>> operator) {
+        if (lazy) {
+            var source = source();
+            plan = counted(name, source, operator, counters);
+        } else {
+            list = run(name, s -> operator.apply(s).collect(Collectors.toList()));
+        }
+        operators = operators.then(name);
+        return this;
+    }
+
+    private <K> SingleSelector<K> derive(String name, Function<Stream<T>, Stream<K>> operator) {
+        SingleSelector<K> selector;
+        if (lazy) {
+            var source = source();
+            var derived = new ArrayList<>(counters);
+            selector = new SingleSelector<K>(counted(name, source, operator, derived), null);
+            selector.counters = derived;
+        } else {
+            List<K> collect = run(name, s -> operator.apply(s).collect(Collectors.toList()));
+            selector = new SingleSelector<K>(collect);
+        }
+        selector.pool = pool;
+        selector.threshold = threshold;
+        selector.profile = profile;
+        selector.operators = operators.then(name);
+        return selector;
+    }
+
+    // lazy operator, its rows are counted when profiling
+    private <K> Supplier<Stream<K>> counted(String name, Supplier<Stream<T>> source,
+            Function<Stream<T>, Stream<K>> operator, List<RowCounter> counters) {
+        if (profile == null)
+            return () -> operator.apply(source.get());
+        var counter = new RowCounter(name);
+        counters.add(counter);
+        return () -> counter.out(operator.apply(counter.in(source.get())));
     }
 
 }
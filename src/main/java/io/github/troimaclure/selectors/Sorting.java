@@ -0,0 +1,238 @@
+package io.github.troimaclure.selectors;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.Function;
+import java.util.function.IntBinaryOperator;
+import java.util.stream.Stream;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Sort algorithms shared by the selectors and compiled queries.
+ *
+ * @author ajosse
+ */
+public final class Sorting {
+
+    private static final int INSERTION_RUN = 32;
+
+    private Sorting() {
+    }
+
+    /**
+     * <p>
+     * Stable top-K : the {@code k} smallest elements of the stream in
+     * {@code comparator} order, same result as a stable sort followed by a limit,
+     * in O(n log k) time and O(k) memory. A stream of at most {@code k}
+     * elements is simply sorted, so a large or unbounded {@code k} costs no
+     * more than the full sort.
+     * </p>
+     * 
+     * @param <T>
+     * @param stream
+     * @param comparator
+     * @param k
+     * @return sorted {@code ArrayList<T>}
+     */
+    // the first k elements are buffered, past that they become a max-heap of
+    // the k best elements, ties broken by position
+    public static <T> ArrayList<T> topK(Stream<T> stream, Comparator<? super T> comparator, long k) {
+        var buffer = new ArrayList<T>();
+        if (k <= 0)
+            return buffer;
+        var iterator = stream.iterator();
+        while (buffer.size() < k && iterator.hasNext()) {
+            buffer.add(iterator.next());
+        }
+        if (!iterator.hasNext()) {
+            buffer.sort(comparator);
+            return buffer;
+        }
+        Comparator<Ranked<T>> ranking = Comparator.<Ranked<T>, T>comparing(r -> r.value, comparator)
+                .thenComparingLong(r -> r.index);
+        var heap = new PriorityQueue<Ranked<T>>(buffer.size(), ranking.reversed());
+        long index = 0;
+        for (T e : buffer) {
+            heap.add(new Ranked<>(e, index++));
+        }
+        buffer.clear();
+        while (iterator.hasNext()) {
+            T e = iterator.next();
+            if (comparator.compare(e, heap.peek().value) < 0) {
+                heap.poll();
+                heap.add(new Ranked<>(e, index));
+            }
+            index++;
+        }
+        var ranked = new ArrayList<>(heap);
+        ranked.sort(ranking);
+        var result = new ArrayList<T>(ranked.size());
+        for (var r : ranked) {
+            result.add(r.value);
+        }
+        return result;
+    }
+
+    /**
+     * <p>
+     * Stable multi-key sort computing every key once per element
+     * (decorate-sort-undecorate): keys are extracted into one column per sort
+     * key, Integer / Long / Double columns in natural order are unboxed into
+     * primitive arrays, then positions are merge sorted on the columns. Same
+     * order as a stable sort on the composed comparator.
+     * </p>
+     * 
+     * @param <T>
+     * @param rows
+     * @param keys
+     * @param parallel extract the keys on the fork-join pool
+     * @return sorted {@code ArrayList<T>}
+     */
+    static <T> ArrayList<T> sortByKeys(List<T> rows, List<Key<T>> keys, boolean parallel) {
+        var columns = new IntBinaryOperator[keys.size()];
+        for (int k = 0; k < columns.length; k++) {
+            columns[k] = column(rows, keys.get(k), parallel);
+        }
+        IntBinaryOperator comparator = columns.length == 1 ? columns[0] : (a, b) -> {
+            for (var column : columns) {
+                int c = column.applyAsInt(a, b);
+                if (c != 0)
+                    return c;
+            }
+            return 0;
+        };
+        var order = new int[rows.size()];
+        Arrays.setAll(order, i -> i);
+        mergeSort(order, comparator);
+        var sorted = new ArrayList<T>(order.length);
+        for (int i : order) {
+            sorted.add(rows.get(i));
+        }
+        return sorted;
+    }
+
+    // compares two positions on their cached key, descending keys swap sides
+    private static <T> IntBinaryOperator column(List<T> rows, Key<T> key, boolean parallel) {
+        var values = new Object[rows.size()];
+        if (parallel)
+            Arrays.parallelSetAll(values, i -> key.extractor.apply(rows.get(i)));
+        else
+            Arrays.setAll(values, i -> key.extractor.apply(rows.get(i)));
+        IntBinaryOperator ascending = null;
+        if (key.comparator == null) {
+            if (all(values, Integer.class)) {
+                var ints = new int[values.length];
+                Arrays.setAll(ints, i -> (Integer) values[i]);
+                ascending = (a, b) -> Integer.compare(ints[a], ints[b]);
+            } else if (all(values, Long.class)) {
+                var longs = new long[values.length];
+                Arrays.setAll(longs, i -> (Long) values[i]);
+                ascending = (a, b) -> Long.compare(longs[a], longs[b]);
+            } else if (all(values, Double.class)) {
+                var doubles = new double[values.length];
+                Arrays.setAll(doubles, i -> (Double) values[i]);
+                ascending = (a, b) -> Double.compare(doubles[a], doubles[b]);
+            }
+        }
+        if (ascending == null) {
+            Comparator<Object> comparator = key.comparator != null ? key.comparator : Key.NATURAL;
+            ascending = (a, b) -> comparator.compare(values[a], values[b]);
+        }
+        if (!key.descending)
+            return ascending;
+        var compare = ascending;
+        return (a, b) -> compare.applyAsInt(b, a);
+    }
+
+    private static boolean all(Object[] values, Class<?> type) {
+        for (var value : values) {
+            if (value == null || value.getClass() != type)
+                return false;
+        }
+        return true;
+    }
+
+    // stable bottom-up merge sort of positions, insertion sorted runs first
+    private static void mergeSort(int[] positions, IntBinaryOperator comparator) {
+        int n = positions.length;
+        for (int lo = 0; lo < n; lo += INSERTION_RUN) {
+            int hi = Math.min(lo + INSERTION_RUN, n);
+            for (int i = lo + 1; i < hi; i++) {
+                int p = positions[i];
+                int j = i - 1;
+                while (j >= lo && comparator.applyAsInt(positions[j], p) > 0) {
+                    positions[j + 1] = positions[j];
+                    j--;
+                }
+                positions[j + 1] = p;
+            }
+        }
+        int[] source = positions;
+        int[] target = new int[n];
+        for (long width = INSERTION_RUN; width < n; width <<= 1) {
+            for (int lo = 0; lo < n; lo += (int) Math.min(2 * width, n)) {
+                int mid = (int) Math.min(lo + width, n);
+                int hi = (int) Math.min(lo + 2 * width, n);
+                int i = lo;
+                int j = mid;
+                int k = lo;
+                while (i < mid && j < hi) {
+                    target[k++] = comparator.applyAsInt(source[j], source[i]) < 0 ? source[j++] : source[i++];
+                }
+                System.arraycopy(source, i, target, k, mid - i);
+                System.arraycopy(source, j, target, k + mid - i, hi - j);
+            }
+            var swap = source;
+            source = target;
+            target = swap;
+        }
+        if (source != positions)
+            System.arraycopy(source, 0, positions, 0, n);
+    }
+
+    /**
+     * One key of a multi-key sort, a null comparator means natural order.
+     */
+    static class Key<T> {
+        @SuppressWarnings("unchecked")
+        static final Comparator<Object> NATURAL = (a, b) -> ((Comparable<Object>) a).compareTo(b);
+
+        final Function<? super T, ?> extractor;
+        final Comparator<Object> comparator;
+        final boolean descending;
+
+        @SuppressWarnings("unchecked")
+        <U> Key(Function<? super T, ? extends U> extractor, Comparator<? super U> comparator, boolean descending) {
+            this.extractor = extractor;
+            this.comparator = (Comparator<Object>) comparator;
+            this.descending = descending;
+        }
+
+        // keys compared in sort order, descending keys swap sides
+        int compareKey(Object a, Object b) {
+            var keyComparator = comparator != null ? comparator : NATURAL;
+            return descending ? keyComparator.compare(b, a) : keyComparator.compare(a, b);
+        }
+
+        boolean same(Key<T> other) {
+            return extractor == other.extractor && comparator == other.comparator && descending == other.descending;
+        }
+
+        // same order as the cached sort, for top-K and spilled sorts
+        Comparator<T> comparator() {
+            var keyComparator = comparator != null ? comparator : NATURAL;
+            Comparator<T> ascending = (a, b) -> keyComparator.compare(extractor.apply(a), extractor.apply(b));
+            return descending ? ascending.reversed() : ascending;
+        }
+    }
+
+    @RequiredArgsConstructor
+    private static class Ranked<T> {
+        private final T value;
+        private final long index;
+    }
+}
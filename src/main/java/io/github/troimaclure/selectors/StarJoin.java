@@ -0,0 +1,200 @@
+package io.github.troimaclure.selectors;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import io.github.troimaclure.exceptions.QException;
+
+/**
+ * <h3>Usage</h3>
+ * 
+ * <pre>{@code
+ * var star = Q.star(sales);
+ * var product = star.dim(products, Sale::getProductId, Product::getId);
+ * var store = star.optionalDim(stores, Sale::getStoreId, Store::getId);
+ * star.select(row -> new Line(row.fact(), row.get(product).getName(), row.get(store))).toList();
+ * }</pre>
+ * <p>
+ * Multi-way equi-join of a fact list with any number of dimension lists: a
+ * hash table is built once per dimension (on first use, then reused), then
+ * the facts are probed in a single pass, without intermediate pairs nor
+ * intermediate lists. A fact is kept once per combination of matches, in fact
+ * order; a fact missing a {@link #dim} match is dropped, a missing
+ * {@link #optionalDim} match is null.
+ * </p>
+ *
+ * @author ajosse
+ */
+public class StarJoin<F> {
+    private final List<F> facts;
+    private final List<Dimension<F, ?>> dimensions = new ArrayList<>();
+
+    public StarJoin(List<F> facts) {
+        this.facts = facts;
+    }
+
+    public <D, K> Dimension<F, D> dim(List<D> list, Function<? super F, ? extends K> factKey,
+            Function<? super D, ? extends K> dimKey) {
+        return add(new Dimension<F, D>(this, dimensions.size(), list, factKey, dimKey, false));
+    }
+
+    public <D, K> Dimension<F, D> optionalDim(List<D> list, Function<? super F, ? extends K> factKey,
+            Function<? super D, ? extends K> dimKey) {
+        return add(new Dimension<F, D>(this, dimensions.size(), list, factKey, dimKey, true));
+    }
+
+    /**
+     * <p>
+     * Project each joined row, {@code projection} receives the same
+     * {@link Row} instance for every match: read it, do not keep it.
+     * </p>
+     * 
+     * @param <R>
+     * @param projection
+     * @return {@code SingleSelector<R>}
+     */
+    public <R> SingleSelector<R> select(Function<? super Row<F>, ? extends R> projection) {
+        var results = new ArrayList<R>(facts.size());
+        var row = new Row<F>(this, new Object[dimensions.size()]);
+        probe(fact -> results.add(projection.apply(row.at(fact))), row.dims);
+        return selector(results, "select");
+    }
+
+    /**
+     * @return one {@link Row} per match, flat tuple of the fact and its
+     *         dimensions
+     */
+    public SingleSelector<Row<F>> rows() {
+        var results = new ArrayList<Row<F>>(facts.size());
+        var dims = new Object[dimensions.size()];
+        probe(fact -> results.add(new Row<F>(this, dims.clone()).at(fact)), dims);
+        return selector(results, "rows");
+    }
+
+    private <D> Dimension<F, D> add(Dimension<F, D> dimension) {
+        dimensions.add(dimension);
+        return dimension;
+    }
+
+    private void probe(Consumer<F> sink, Object[] dims) {
+        for (var dimension : dimensions) {
+            dimension.build();
+        }
+        for (F fact : facts) {
+            probe(fact, 0, dims, sink);
+        }
+    }
+
+    // fills dims[d..] with each combination of matches of the fact
+    private void probe(F fact, int d, Object[] dims, Consumer<F> sink) {
+        if (d == dims.length) {
+            sink.accept(fact);
+            return;
+        }
+        var dimension = dimensions.get(d);
+        var matches = dimension.matches(fact);
+        if (matches == null) {
+            if (!dimension.optional)
+                return;
+            dims[d] = null;
+            probe(fact, d + 1, dims, sink);
+            return;
+        }
+        for (int i = 0; i < matches.size(); i++) {
+            dims[d] = matches.get(i);
+            probe(fact, d + 1, dims, sink);
+        }
+    }
+
+    private <R> SingleSelector<R> selector(List<R> results, String operator) {
+        var selector = new SingleSelector<R>(results);
+        int size = facts.size();
+        var operators = Operators.of(() -> "star join list[" + size + "]");
+        for (var dimension : dimensions) {
+            var kind = dimension.optional ? "optionalDim" : "dim";
+            int rows = dimension.list.size();
+            operators = operators.then(() -> kind + " list[" + rows + "]");
+        }
+        selector.operators = operators.then(operator);
+        return selector;
+    }
+
+    /**
+     * Typed handle of one dimension, reads its value in a {@link Row}.
+     */
+    public static class Dimension<F, D> {
+        private final StarJoin<F> join;
+        private final int index;
+        private final List<D> list;
+        private final Function<? super F, ?> factKey;
+        private final Function<? super D, ?> dimKey;
+        private final boolean optional;
+        private Map<Object, List<D>> table;
+
+        private Dimension(StarJoin<F> join, int index, List<D> list, Function<? super F, ?> factKey,
+                Function<? super D, ?> dimKey, boolean optional) {
+            this.join = join;
+            this.index = index;
+            this.list = list;
+            this.factKey = factKey;
+            this.dimKey = dimKey;
+            this.optional = optional;
+        }
+
+        private void build() {
+            if (table != null)
+                return;
+            table = new HashMap<>();
+            for (D d : list) {
+                table.computeIfAbsent(dimKey.apply(d), k -> new ArrayList<>(1)).add(d);
+            }
+        }
+
+        private List<D> matches(F fact) {
+            return table.get(factKey.apply(fact));
+        }
+    }
+
+    /**
+     * A fact and one match per dimension (null for a missing optional one).
+     */
+    public static class Row<F> {
+        private final StarJoin<F> join;
+        private final Object[] dims;
+        private F fact;
+
+        private Row(StarJoin<F> join, Object[] dims) {
+            this.join = join;
+            this.dims = dims;
+        }
+
+        private Row<F> at(F fact) {
+            this.fact = fact;
+            return this;
+        }
+
+        public F fact() {
+            return fact;
+        }
+
+        @SuppressWarnings("unchecked")
+        public <D> D get(Dimension<F, D> dimension) {
+            if (dimension.join != join)
+                throw new QException("This dimension belongs to another star join", "JOIN_EX");
+            return (D) dims[dimension.index];
+        }
+
+        @Override
+        public String toString() {
+            var text = new StringBuilder("(").append(fact);
+            for (var dim : dims) {
+                text.append(", ").append(dim);
+            }
+            return text.append(')').toString();
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package io.github.troimaclure.sinks;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.stream.Stream;
+
+import io.github.troimaclure.exceptions.QException;
+
+/**
+ * Writes formatted rows to a channel in UTF-8 with constant memory: rows are
+ * formatted into a reused {@link StringBuilder}, encoded every
+ * {@value #TEXT_SIZE} chars into a reused direct {@link ByteBuffer} of
+ * {@value #BUFFER_SIZE} bytes, which is written to the channel each time it
+ * is full.
+ *
+ * @author ajosse
+ */
+public final class ChannelSink {
+    static final int BUFFER_SIZE = 1 << 16;
+    static final int TEXT_SIZE = 1 << 13;
+
+    private final WritableByteChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+    private final StringBuilder text = new StringBuilder(TEXT_SIZE + 1024);
+    private long written;
+
+    private ChannelSink(WritableByteChannel channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * @param <T>
+     * @param rows
+     * @param formatter
+     * @param channel   left open
+     * @return bytes written
+     */
+    public static <T> long write(Stream<T> rows, RowFormatter<? super T> formatter, WritableByteChannel channel) {
+        var sink = new ChannelSink(channel);
+        try {
+            formatter.header(sink.text);
+            rows.forEachOrdered(row -> {
+                formatter.format(row, sink.text);
+                if (sink.text.length() >= TEXT_SIZE)
+                    sink.encode(false);
+            });
+            sink.encode(true);
+            sink.encoder.flush(sink.buffer);
+            sink.flush();
+        } catch (IOException e) {
+            throw new QException("Write failed: " + e.getMessage(), "SINK_EX");
+        } catch (UncheckedIOException e) {
+            throw new QException("Write failed: " + e.getCause().getMessage(), "SINK_EX");
+        }
+        return sink.written;
+    }
+
+    private void encode(boolean endOfInput) {
+        try {
+            var chars = CharBuffer.wrap(text);
+            while (true) {
+                var result = encoder.encode(chars, buffer, endOfInput);
+                if (result.isOverflow()) {
+                    flush();
+                } else {
+                    if (result.isError())
+                        result.throwException();
+                    break;
+                }
+            }
+            // a trailing high surrogate waits for the next row
+            int pending = chars.remaining();
+            text.delete(0, text.length() - pending);
+        } catch (CharacterCodingException e) {
+            throw new QException("Cannot encode row: " + e.getMessage(), "SINK_EX");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            written += channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
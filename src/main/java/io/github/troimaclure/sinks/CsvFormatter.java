@@ -0,0 +1,87 @@
+package io.github.troimaclure.sinks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * <h3>Usage</h3>
+ * 
+ * <pre>{@code
+ * var csv = new CsvFormatter<Product>().column("id", Product::getId).column("name", Product::getName);
+ * Q.from(products).writeTo(Path.of("products.csv"), csv);
+ * }</pre>
+ * <p>
+ * RFC 4180 CSV: a header line with the column names, then one line per row.
+ * Values holding the separator, a quote or a line break are quoted, null is
+ * an empty value.
+ * </p>
+ *
+ * @author ajosse
+ */
+public class CsvFormatter<T> implements RowFormatter<T> {
+    private final List<String> names = new ArrayList<>();
+    private final List<Function<? super T, ?>> values = new ArrayList<>();
+    private char separator = ',';
+    private boolean header = true;
+
+    public CsvFormatter<T> column(String name, Function<? super T, ?> value) {
+        names.add(name);
+        values.add(value);
+        return this;
+    }
+
+    public CsvFormatter<T> separator(char separator) {
+        this.separator = separator;
+        return this;
+    }
+
+    public CsvFormatter<T> withoutHeader() {
+        this.header = false;
+        return this;
+    }
+
+    @Override
+    public void header(StringBuilder out) {
+        if (!header)
+            return;
+        for (int i = 0; i < names.size(); i++) {
+            if (i > 0)
+                out.append(separator);
+            append(names.get(i), out);
+        }
+        out.append("\r\n");
+    }
+
+    @Override
+    public void format(T row, StringBuilder out) {
+        for (int i = 0; i < values.size(); i++) {
+            if (i > 0)
+                out.append(separator);
+            var value = values.get(i).apply(row);
+            if (value != null)
+                append(value.toString(), out);
+        }
+        out.append("\r\n");
+    }
+
+    private void append(String value, StringBuilder out) {
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == separator || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            out.append(value);
+            return;
+        }
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"')
+                out.append('"');
+            out.append(c);
+        }
+        out.append('"');
+    }
+}
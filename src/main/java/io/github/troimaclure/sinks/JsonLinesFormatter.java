@@ -0,0 +1,87 @@
+package io.github.troimaclure.sinks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * <h3>Usage</h3>
+ * 
+ * <pre>{@code
+ * var json = new JsonLinesFormatter<Product>().field("id", Product::getId).field("name", Product::getName);
+ * Q.from(products).writeTo(Path.of("products.jsonl"), json);
+ * }</pre>
+ * <p>
+ * One JSON object per line. Numbers and booleans are written as is (NaN and
+ * infinities as null), other values as JSON strings of their
+ * {@code toString()}.
+ * </p>
+ *
+ * @author ajosse
+ */
+public class JsonLinesFormatter<T> implements RowFormatter<T> {
+    private final List<String> names = new ArrayList<>();
+    private final List<Function<? super T, ?>> values = new ArrayList<>();
+
+    public JsonLinesFormatter<T> field(String name, Function<? super T, ?> value) {
+        names.add(name);
+        values.add(value);
+        return this;
+    }
+
+    @Override
+    public void format(T row, StringBuilder out) {
+        out.append('{');
+        for (int i = 0; i < values.size(); i++) {
+            if (i > 0)
+                out.append(',');
+            string(names.get(i), out);
+            out.append(':');
+            value(values.get(i).apply(row), out);
+        }
+        out.append("}\n");
+    }
+
+    private void value(Object value, StringBuilder out) {
+        if (value == null) {
+            out.append("null");
+        } else if (value instanceof Double || value instanceof Float) {
+            double d = ((Number) value).doubleValue();
+            out.append(Double.isFinite(d) ? value.toString() : "null");
+        } else if (value instanceof Number || value instanceof Boolean) {
+            out.append(value);
+        } else {
+            string(value.toString(), out);
+        }
+    }
+
+    private void string(String value, StringBuilder out) {
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+            case '"':
+                out.append("\\\"");
+                break;
+            case '\\':
+                out.append("\\\\");
+                break;
+            case '\n':
+                out.append("\\n");
+                break;
+            case '\r':
+                out.append("\\r");
+                break;
+            case '\t':
+                out.append("\\t");
+                break;
+            default:
+                if (c < 0x20)
+                    out.append(String.format("\\u%04x", (int) c));
+                else
+                    out.append(c);
+            }
+        }
+        out.append('"');
+    }
+}
@@ -0,0 +1,26 @@
+package io.github.troimaclure.sinks;
+
+/**
+ * Formats rows as text for {@code SingleSelector.writeTo}, see
+ * {@link CsvFormatter} and {@link JsonLinesFormatter}.
+ *
+ * @author ajosse
+ */
+public interface RowFormatter<T> {
+
+    /**
+     * Append {@code row} to {@code out}, line separator included.
+     * 
+     * @param row
+     * @param out
+     */
+    void format(T row, StringBuilder out);
+
+    /**
+     * Append the text written before the first row (nothing by default).
+     * 
+     * @param out
+     */
+    default void header(StringBuilder out) {
+    }
+}
@@ -0,0 +1,334 @@
+package io.github.troimaclure.spill;
+
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Spilling versions of sort, distinct and groupBy used by
+ * {@code SingleSelector.spill(config)}. Each one returns a stream that starts
+ * reading its source when its terminal operator starts, and gives the same
+ * result, in the same order, as the in-memory operator.
+ * <ul>
+ * <li>sort: sorted runs of {@code maxRowsInMemory} rows are written to disk
+ * then k-way merged (stable, ties keep their run order)</li>
+ * <li>distinct / groupBy: rows are hash partitioned on their key with their
+ * position, each partition is reduced on its own, then partitions are merged
+ * back on the position of the first row of each key</li>
+ * </ul>
+ * Nothing is written when the source holds at most {@code maxRowsInMemory}
+ * rows. Every file left is deleted when the returned stream is closed, which
+ * the selector terminal operators do even when they stop early.
+ *
+ * @author ajosse
+ */
+public final class External {
+
+    private External() {
+    }
+
+    public static <T> Stream<T> sort(Stream<T> source, Comparator<? super T> comparator, SpillConfig<T> config) {
+        return deferred(source, files -> {
+            var runs = new ArrayList<SpillFile>();
+            var buffer = new ArrayList<T>();
+            try {
+                source.forEachOrdered(t -> {
+                    buffer.add(t);
+                    if (buffer.size() < config.getMaxRowsInMemory())
+                        return;
+                    buffer.sort(comparator);
+                    var run = new SpillFile(config);
+                    files.add(run);
+                    runs.add(run);
+                    for (T e : buffer) {
+                        run.write(e, config.getSerializer());
+                    }
+                    buffer.clear();
+                });
+            } catch (RuntimeException e) {
+                deleteAll(files);
+                throw e;
+            }
+            buffer.sort(comparator);
+            if (runs.isEmpty())
+                return buffer.iterator();
+            var cursors = new ArrayList<Iterator<T>>();
+            for (var run : runs) {
+                cursors.add(records(run, config));
+            }
+            cursors.add(buffer.iterator());
+            return merge(cursors, comparator, runs);
+        });
+    }
+
+    public static <T> Stream<T> distinct(Stream<T> source, Function<? super T, ?> keyExtractor,
+            SpillConfig<T> config) {
+        return deferred(source, files -> {
+            var buffer = new ArrayList<T>();
+            var partitions = partition(source, keyExtractor, config, buffer, files);
+            if (partitions.isEmpty()) {
+                var seen = new HashSet<Object>();
+                buffer.removeIf(t -> !seen.add(keyExtractor.apply(t)));
+                return buffer.iterator();
+            }
+            var outputs = new ArrayList<SpillFile>();
+            var cursors = new ArrayList<Iterator<Sequenced<T>>>();
+            try {
+                for (var partition : partitions) {
+                    var seen = new HashSet<Object>();
+                    var output = new SpillFile(config);
+                    files.add(output);
+                    outputs.add(output);
+                    while (partition.hasRemaining()) {
+                        long position = partition.readLong();
+                        T t = partition.read(config.getSerializer());
+                        if (seen.add(keyExtractor.apply(t))) {
+                            output.writeLong(position);
+                            output.write(t, config.getSerializer());
+                        }
+                    }
+                    partition.delete();
+                    cursors.add(sequenced(output, () -> output.read(config.getSerializer())));
+                }
+            } catch (RuntimeException e) {
+                deleteAll(files);
+                throw e;
+            }
+            return values(merge(cursors, Comparator.comparingLong(s -> s.position), outputs));
+        });
+    }
+
+    public static <K, T> Stream<Entry<K, List<T>>> groupBy(Stream<T> source, Function<? super T, K> keyExtractor,
+            SpillConfig<T> config) {
+        return deferred(source, files -> {
+            var buffer = new ArrayList<T>();
+            var partitions = partition(source, keyExtractor, config, buffer, files);
+            if (partitions.isEmpty()) {
+                var groups = new LinkedHashMap<K, List<T>>();
+                for (T t : buffer) {
+                    groups.computeIfAbsent(keyExtractor.apply(t), k -> new ArrayList<>()).add(t);
+                }
+                return new ArrayList<Entry<K, List<T>>>(groups.entrySet()).iterator();
+            }
+            var outputs = new ArrayList<SpillFile>();
+            var cursors = new ArrayList<Iterator<Sequenced<List<T>>>>();
+            try {
+                for (var partition : partitions) {
+                    var groups = new LinkedHashMap<K, Sequenced<List<T>>>();
+                    while (partition.hasRemaining()) {
+                        long position = partition.readLong();
+                        T t = partition.read(config.getSerializer());
+                        groups.computeIfAbsent(keyExtractor.apply(t), k -> new Sequenced<>(position, new ArrayList<>()))
+                                .value.add(t);
+                    }
+                    partition.delete();
+                    var output = new SpillFile(config);
+                    files.add(output);
+                    outputs.add(output);
+                    for (var group : groups.values()) {
+                        output.writeLong(group.position);
+                        output.writeInt(group.value.size());
+                        for (T t : group.value) {
+                            output.write(t, config.getSerializer());
+                        }
+                    }
+                    cursors.add(sequenced(output, () -> {
+                        int size = output.readInt();
+                        var rows = new ArrayList<T>(size);
+                        for (int i = 0; i < size; i++) {
+                            rows.add(output.read(config.getSerializer()));
+                        }
+                        return rows;
+                    }));
+                }
+            } catch (RuntimeException e) {
+                deleteAll(files);
+                throw e;
+            }
+            var groups = values(merge(cursors, Comparator.comparingLong(s -> s.position), outputs));
+            return new Iterator<Entry<K, List<T>>>() {
+                @Override
+                public boolean hasNext() {
+                    return groups.hasNext();
+                }
+
+                @Override
+                public Entry<K, List<T>> next() {
+                    var rows = groups.next();
+                    return new SimpleImmutableEntry<>(keyExtractor.apply(rows.get(0)), rows);
+                }
+            };
+        });
+    }
+
+    // keeps up to maxRowsInMemory rows in buffer, past that every row is
+    // written with its position to the partition of its key
+    private static <T> List<SpillFile> partition(Stream<T> source, Function<? super T, ?> keyExtractor,
+            SpillConfig<T> config, List<T> buffer, List<SpillFile> files) {
+        var partitions = new ArrayList<SpillFile>();
+        long[] position = { 0 };
+        try {
+            source.forEachOrdered(t -> {
+                if (partitions.isEmpty()) {
+                    buffer.add(t);
+                    if (buffer.size() <= config.getMaxRowsInMemory())
+                        return;
+                    for (int i = 0; i < config.getPartitions(); i++) {
+                        var partition = new SpillFile(config);
+                        files.add(partition);
+                        partitions.add(partition);
+                    }
+                    for (T e : buffer) {
+                        write(partitions, position[0]++, e, keyExtractor, config);
+                    }
+                    buffer.clear();
+                } else {
+                    write(partitions, position[0]++, t, keyExtractor, config);
+                }
+            });
+        } catch (RuntimeException e) {
+            deleteAll(files);
+            throw e;
+        }
+        return partitions;
+    }
+
+    private static <T> void write(List<SpillFile> partitions, long position, T t,
+            Function<? super T, ?> keyExtractor, SpillConfig<T> config) {
+        int hash = Objects.hashCode(keyExtractor.apply(t));
+        var partition = partitions.get(Math.floorMod(hash ^ (hash >>> 16), partitions.size()));
+        partition.writeLong(position);
+        partition.write(t, config.getSerializer());
+    }
+
+    private static <T> Iterator<T> records(SpillFile run, SpillConfig<T> config) {
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return run.hasRemaining();
+            }
+
+            @Override
+            public T next() {
+                return run.read(config.getSerializer());
+            }
+        };
+    }
+
+    private static <T> Iterator<Sequenced<T>> sequenced(SpillFile run, Supplier<T> reader) {
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return run.hasRemaining();
+            }
+
+            @Override
+            public Sequenced<T> next() {
+                long position = run.readLong();
+                return new Sequenced<>(position, reader.get());
+            }
+        };
+    }
+
+    private static <T> Iterator<T> values(Iterator<Sequenced<T>> sequenced) {
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return sequenced.hasNext();
+            }
+
+            @Override
+            public T next() {
+                return sequenced.next().value;
+            }
+        };
+    }
+
+    // k-way merge of sorted runs, the files are deleted as soon as every run is
+    // read, the stream closing deletes them otherwise
+    private static <T> Iterator<T> merge(List<Iterator<T>> runs, Comparator<? super T> comparator,
+            List<SpillFile> files) {
+        var heap = new PriorityQueue<Head<T>>((a, b) -> {
+            int c = comparator.compare(a.value, b.value);
+            return c != 0 ? c : Integer.compare(a.run, b.run);
+        });
+        for (int i = 0; i < runs.size(); i++) {
+            if (runs.get(i).hasNext())
+                heap.add(new Head<>(runs.get(i).next(), i));
+        }
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                if (!heap.isEmpty())
+                    return true;
+                deleteAll(files);
+                return false;
+            }
+
+            @Override
+            public T next() {
+                var head = heap.poll();
+                if (head == null)
+                    throw new NoSuchElementException();
+                T value = head.value;
+                var run = runs.get(head.run);
+                if (run.hasNext()) {
+                    head.value = run.next();
+                    heap.add(head);
+                }
+                return value;
+            }
+        };
+    }
+
+    // every file created while building the iterator goes to the list deleted
+    // on close
+    private static <T> Stream<T> deferred(Stream<?> source, Function<List<SpillFile>, Iterator<T>> iterator) {
+        var files = new ArrayList<SpillFile>();
+        return StreamSupport
+                .stream(() -> Spliterators.spliteratorUnknownSize(iterator.apply(files), Spliterator.ORDERED),
+                        Spliterator.ORDERED, false)
+                .onClose(() -> deleteAll(files))
+                .onClose(source::close);
+    }
+
+    private static void deleteAll(List<SpillFile> files) {
+        for (var file : files) {
+            file.delete();
+        }
+    }
+
+    private static class Head<T> {
+        T value;
+        final int run;
+
+        Head(T value, int run) {
+            this.value = value;
+            this.run = run;
+        }
+    }
+
+    private static class Sequenced<T> {
+        final long position;
+        final T value;
+
+        Sequenced(long position, T value) {
+            this.position = position;
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package io.github.troimaclure.spill;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * <h3>Usage</h3>
+ * 
+ * <pre>{@code
+ * RecordSerializer<Product> products = new RecordSerializer<>() {
+ *     public void write(Product p, DataOutput out) throws IOException {
+ *         out.writeUTF(p.getName());
+ *         out.writeInt(p.getId());
+ *     }
+ * 
+ *     public Product read(DataInput in) throws IOException {
+ *         return new Product(in.readUTF(), in.readInt());
+ *     }
+ * };
+ * }</pre>
+ * <p>
+ * Writes and reads back the records spilled to disk, see {@link SpillConfig}.
+ * </p>
+ *
+ * @author ajosse
+ */
+public interface RecordSerializer<T> {
+
+    void write(T value, DataOutput out) throws IOException;
+
+    T read(DataInput in) throws IOException;
+
+    static RecordSerializer<String> strings() {
+        return new RecordSerializer<>() {
+            @Override
+            public void write(String value, DataOutput out) throws IOException {
+                var bytes = value.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+
+            @Override
+            public String read(DataInput in) throws IOException {
+                var bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                return new String(bytes, StandardCharsets.UTF_8);
+            }
+        };
+    }
+
+    /**
+     * <p>
+     * Java serialization of each record, works for any {@link Serializable}
+     * type but is much bigger and slower than a dedicated serializer.
+     * </p>
+     * 
+     * @return {@code RecordSerializer<T>}
+     */
+    static <T extends Serializable> RecordSerializer<T> serializable() {
+        return new RecordSerializer<>() {
+            @Override
+            public void write(T value, DataOutput out) throws IOException {
+                var bytes = new ByteArrayOutputStream();
+                try (var objects = new ObjectOutputStream(bytes)) {
+                    objects.writeObject(value);
+                }
+                out.writeInt(bytes.size());
+                out.write(bytes.toByteArray());
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public T read(DataInput in) throws IOException {
+                var bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                try (var objects = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+                    return (T) objects.readObject();
+                } catch (ClassNotFoundException e) {
+                    throw new IOException(e);
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,51 @@
+package io.github.troimaclure.spill;
+
+import java.nio.file.Path;
+
+import io.github.troimaclure.exceptions.QException;
+import lombok.Getter;
+
+/**
+ * <h3>Usage</h3>
+ * 
+ * <pre>{@code
+ * var config = new SpillConfig<>(RecordSerializer.strings(), 1_000_000).directory(Path.of("/data/tmp"));
+ * Q.from(lines).spill(config).orderBy(Function.identity()).foreach(writer::println);
+ * }</pre>
+ * <p>
+ * Memory budget of a spilling selector: at most {@code maxRowsInMemory} rows
+ * are buffered, beyond that sorted runs or hash partitions are written to
+ * temporary files in {@code directory} and read back while merging.
+ * </p>
+ *
+ * @author ajosse
+ */
+@Getter
+public class SpillConfig<T> {
+    public static final int DEFAULT_PARTITIONS = 32;
+
+    private final RecordSerializer<T> serializer;
+    private final int maxRowsInMemory;
+    private Path directory = Path.of(System.getProperty("java.io.tmpdir"));
+    // hash partitions used by distinct and groupBy, each one must fit in memory
+    private int partitions = DEFAULT_PARTITIONS;
+
+    public SpillConfig(RecordSerializer<T> serializer, int maxRowsInMemory) {
+        if (maxRowsInMemory < 1)
+            throw new QException("maxRowsInMemory must be positive", "SPILL_EX");
+        this.serializer = serializer;
+        this.maxRowsInMemory = maxRowsInMemory;
+    }
+
+    public SpillConfig<T> directory(Path directory) {
+        this.directory = directory;
+        return this;
+    }
+
+    public SpillConfig<T> partitions(int partitions) {
+        if (partitions < 1)
+            throw new QException("partitions must be positive", "SPILL_EX");
+        this.partitions = partitions;
+        return this;
+    }
+}
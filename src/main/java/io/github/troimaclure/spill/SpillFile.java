@@ -0,0 +1,179 @@
+package io.github.troimaclure.spill;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import io.github.troimaclure.exceptions.QException;
+
+/**
+ * Temporary run file: records are serialized into a heap buffer written with a
+ * FileChannel every {@value #BUFFER_SIZE} bytes, then read back through a
+ * memory-mapped buffer. The file is deleted by {@link #delete()}, called when
+ * the stream reading it is closed.
+ *
+ * @author ajosse
+ */
+class SpillFile {
+    static final int BUFFER_SIZE = 1 << 16;
+
+    private final Path path;
+    private FileChannel channel;
+    private final Buffer bytes = new Buffer();
+    private final DataOutputStream out = new DataOutputStream(bytes);
+    private ByteBuffer mapped;
+    private DataInputStream in;
+
+    SpillFile(SpillConfig<?> config) {
+        try {
+            path = Files.createTempFile(config.getDirectory(), "q-spill-", ".run");
+            channel = FileChannel.open(path, StandardOpenOption.WRITE);
+        } catch (IOException e) {
+            throw new QException("Cannot create a spill file in " + config.getDirectory() + ": " + e.getMessage(),
+                    "SPILL_EX");
+        }
+    }
+
+    <T> void write(T value, RecordSerializer<T> serializer) {
+        try {
+            serializer.write(value, out);
+            if (bytes.size() >= BUFFER_SIZE)
+                flush();
+        } catch (IOException e) {
+            throw failure(e);
+        }
+    }
+
+    void writeLong(long value) {
+        try {
+            out.writeLong(value);
+        } catch (IOException e) {
+            throw failure(e);
+        }
+    }
+
+    void writeInt(int value) {
+        try {
+            out.writeInt(value);
+        } catch (IOException e) {
+            throw failure(e);
+        }
+    }
+
+    /**
+     * @return false once every record written has been read
+     */
+    boolean hasRemaining() {
+        if (mapped == null)
+            map();
+        return mapped.hasRemaining();
+    }
+
+    <T> T read(RecordSerializer<T> serializer) {
+        if (mapped == null)
+            map();
+        try {
+            return serializer.read(in);
+        } catch (IOException e) {
+            throw failure(e);
+        }
+    }
+
+    long readLong() {
+        try {
+            return in.readLong();
+        } catch (IOException e) {
+            throw failure(e);
+        }
+    }
+
+    int readInt() {
+        try {
+            return in.readInt();
+        } catch (IOException e) {
+            throw failure(e);
+        }
+    }
+
+    void delete() {
+        try {
+            if (channel != null)
+                channel.close();
+            channel = null;
+            mapped = null;
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            // best effort, the file stays in the spill directory
+        }
+    }
+
+    private void flush() throws IOException {
+        var buffer = bytes.view();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        bytes.reset();
+    }
+
+    // ends writing, a run over 2GB cannot be mapped and needs a smaller budget
+    private void map() {
+        try {
+            flush();
+            channel.close();
+            try (var reader = FileChannel.open(path, StandardOpenOption.READ)) {
+                if (reader.size() > Integer.MAX_VALUE)
+                    throw new QException("Spill run " + path + " is over 2GB, lower maxRowsInMemory", "SPILL_EX");
+                mapped = reader.map(FileChannel.MapMode.READ_ONLY, 0, reader.size());
+            }
+            channel = null;
+            in = new DataInputStream(new MappedInput(mapped));
+        } catch (IOException e) {
+            throw failure(e);
+        }
+    }
+
+    private QException failure(IOException e) {
+        delete();
+        return new QException("Spill to " + path + " failed: " + e.getMessage(), "SPILL_EX");
+    }
+
+    // exposes the written bytes without copying them
+    private static class Buffer extends ByteArrayOutputStream {
+        Buffer() {
+            super(BUFFER_SIZE + 1024);
+        }
+
+        ByteBuffer view() {
+            return ByteBuffer.wrap(buf, 0, count);
+        }
+    }
+
+    private static class MappedInput extends InputStream {
+        private final ByteBuffer buffer;
+
+        MappedInput(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (!buffer.hasRemaining())
+                return -1;
+            int n = Math.min(len, buffer.remaining());
+            buffer.get(b, off, n);
+            return n;
+        }
+    }
+}
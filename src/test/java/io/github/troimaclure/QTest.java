@@ -1,15 +1,41 @@
 package io.github.troimaclure;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Random;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import org.apache.commons.lang3.tuple.Pair;
 import org.junit.jupiter.api.AfterEach;
@@ -17,7 +43,12 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import io.github.troimaclure.exceptions.QException;
+import io.github.troimaclure.profiling.OperatorMetrics;
 import io.github.troimaclure.selectors.DualSelector;
+import io.github.troimaclure.sinks.CsvFormatter;
+import io.github.troimaclure.sinks.JsonLinesFormatter;
+import io.github.troimaclure.spill.RecordSerializer;
+import io.github.troimaclure.spill.SpillConfig;
 
 public class QTest {
 
@@ -264,4 +295,711 @@ public class QTest {
         System.out.println(map);
         assertTrue(map.keySet().size() == 6);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testJoinOnKeys() {
+        var expected = Q.join(products, categories).on((p, c) -> p.getId_category() == c.getId()).toList();
+        var result = Q.join(products, categories).on(Product::getId_category, Category::getId).toList();
+        assertEquals(expected, result);
+        var reversed = Q.join(categories, products).on((c, p) -> c.getId() == p.getId_category()).toList();
+        assertEquals(reversed, Q.join(categories, products).on(Category::getId, Product::getId_category).toList());
+    }
+
+    @Test
+    public void testJoinOnKeysResidual() {
+        var result = Q.join(products, categories)
+                .on(Product::getId_category, Category::getId, (p, c) -> p.getName().startsWith("dog")).toList();
+        assertEquals(2, result.size());
+        assertEquals("dog good", result.get(0).getLeft().getName());
+    }
+
+    @Test
+    public void testLazy() {
+        var eager = Q.from(products).where(e -> e.getId() > 1).orderBy(Product::getName).distinct(Product::getId_category)
+                .select(Product::getName).toList();
+        var lazy = Q.from(products).lazy().where(e -> e.getId() > 1).orderBy(Product::getName)
+                .distinct(Product::getId_category).select(Product::getName);
+        assertEquals(eager, lazy.toList());
+        assertEquals(eager, lazy.toList());
+    }
+
+    @Test
+    public void testLazyShortCircuit() {
+        var read = new AtomicInteger();
+        var selector = Q.from(products).lazy().where(e -> read.incrementAndGet() > 0).select(Product::getName);
+        assertEquals(0, read.get());
+        assertEquals("Cat good", selector.firstOrDefault());
+        assertEquals(1, read.get());
+        assertTrue(selector.any(e -> e.startsWith("dog")));
+        assertEquals(4, read.get());
+    }
+
+    @Test
+    public void testParallel() {
+        var numbers = new ArrayList<Integer>();
+        for (int i = 0; i < 50_000; i++) {
+            numbers.add(i % 1000);
+        }
+        var pool = new ForkJoinPool(4);
+        var sequential = Q.from(numbers).where(e -> e % 3 == 0).select(e -> e * 2).distinct(e -> e).toList();
+        var parallel = Q.from(numbers).parallel(pool, 1000).where(e -> e % 3 == 0).select(e -> e * 2)
+                .distinct(e -> e).toList();
+        assertEquals(sequential, parallel);
+        assertEquals(Q.from(numbers).sumInteger(e -> e), Q.from(numbers).parallel(pool, 1000).sumInteger(e -> e));
+        assertEquals(Q.from(numbers).groupBy(e -> e % 7).toMap(Entry::getKey, Entry::getValue),
+                Q.from(numbers).parallel(pool, 1000).lazy().groupBy(e -> e % 7).toMap(Entry::getKey, Entry::getValue));
+
+        Predicate<Integer> onPool = e -> Thread.currentThread() instanceof ForkJoinWorkerThread
+                && ((ForkJoinWorkerThread) Thread.currentThread()).getPool() == pool;
+        var set = new HashSet<>(numbers);
+        assertTrue(Q.from(set).parallel(pool, 10).all(onPool));
+        assertEquals(Q.from(set).select(e -> e * 2).toList(), Q.from(set).parallel(pool, 10).select(e -> e * 2).toList());
+        assertTrue(Q.from(numbers.stream()).parallel(pool, 10).all(onPool));
+        assertFalse(Q.from(set).parallel(pool, 5_000).any(onPool));
+        assertFalse(Q.from(numbers.iterator()).parallel(pool, 10).any(onPool));
+        pool.shutdown();
+    }
+
+    @Test
+    public void testPrimitiveSelectors() {
+        var ids = Q.from(products).selectInt(Product::getId_category);
+        assertEquals(30, ids.sum());
+        assertEquals(8, ids.count());
+        assertEquals(1, ids.min().getAsInt());
+        assertEquals(8, ids.max().getAsInt());
+        var statistics = ids.summaryStatistics();
+        assertEquals(30, statistics.getSum());
+        assertEquals(3.75d, statistics.getAverage());
+        assertTrue(Arrays.equals(new int[] { 8, 7, 6, 3, 2, 1 }, ids.distinct().orderByDesc().toArray()));
+        assertTrue(Arrays.equals(new int[] { 6, 7, 8 }, ids.where(e -> e > 3).orderBy().toArray()));
+
+        assertEquals(4L, Q.from(products).selectLong(Product::getId).where(e -> e < 5).count());
+        assertEquals(12d, Q.from(products).selectDouble(e -> e.getId() / 2d).distinct().where(e -> e > 3)
+                .sum());
+    }
+
+    @Test
+    public void testTakeSkip() {
+        var sorted = Q.from(products).orderByDesc(Product::getId_category).toList();
+        assertEquals(sorted.subList(0, 5), Q.from(products).orderByDesc(Product::getId_category).take(5).toList());
+        assertEquals(sorted.subList(0, 5),
+                Q.from(products).lazy().orderByDesc(Product::getId_category).take(5).toList());
+        assertEquals(sorted, Q.from(products).orderByDesc(Product::getId_category).take(100).toList());
+        assertEquals(0, Q.from(products).orderBy(Product::getId).take(0).toList().size());
+        assertEquals(Arrays.asList(1, 2, 3), Q.from(Arrays.asList(3, 1, 2)).orderBy(x -> x).take(Integer.MAX_VALUE).toList());
+        assertEquals(Arrays.asList(1, 2, 3),
+                Q.from(Arrays.asList(3, 1, 2)).lazy().orderBy(x -> x).take(Integer.MAX_VALUE).toList());
+        assertEquals(Arrays.asList(3, 2), Q.from(Arrays.asList(3, 1, 2)).lazy().orderByDesc(x -> x).take(2).toList());
+        assertThrows(QException.class, () -> Q.from(products).take(-1));
+        assertThrows(QException.class, () -> Q.from(products).orderBy(Product::getId).take(-1));
+        assertThrows(QException.class, () -> Q.<Product>query().take(-1));
+        assertEquals(products.subList(0, 3), Q.from(products).take(3).toList());
+        assertEquals(products.subList(6, 8), Q.from(products).skip(6).toList());
+        assertEquals(products.subList(0, 2), Q.from(products).takeWhile(e -> e.getId_category() == 1).toList());
+        assertEquals(products.subList(2, 8), Q.from(products).skipWhile(e -> e.getId_category() == 1).toList());
+        var names = new ArrayList<String>();
+        Q.from(products).orderByDesc(Product::getName).foreach(e -> names.add(e.getName()));
+        assertEquals("z", names.get(0));
+    }
+
+    @Test
+    public void testSources() {
+        var array = products.toArray(new Product[0]);
+        assertEquals(products, Q.view(array).toList());
+        assertEquals(products, Q.from(array).toList());
+        assertEquals(3, Q.from(new LinkedHashSet<>(categories)).where(e -> e.getId() > 0).toList().size());
+        assertEquals("dog", Q.from(categories.iterator()).select(Category::getName).firstOrDefault(e -> e.startsWith("d")));
+        var stream = Q.from(products.stream()).where(e -> e.getId_category() == 2);
+        assertEquals(2, stream.toList().size());
+        assertEquals(2, stream.toList().size());
+        var once = Q.from(products.stream());
+        once.any(e -> true);
+        assertThrows(QException.class, () -> once.any(e -> true));
+        assertTrue(Q.from(Stream.of("a", "b", "c")).allSame(String::length));
+        assertFalse(Q.from(Arrays.asList("a", "bb").iterator()).allSame(String::length));
+        assertFalse(Q.from(Stream.<String>empty()).allSame(String::length));
+        assertEquals(products, Q.from(products.parallelStream()).where(e -> true).toList());
+        assertTrue(Q.from(products.parallelStream()).any(e -> e.getId() == 9));
+        assertEquals(6, Q.from(new int[] { 1, 2, 3 }).sum());
+        assertEquals(2L, Q.from(new long[] { 2, 2 }).distinct().sum());
+        assertEquals(1.5d, Q.from(new double[] { 1, 2 }).average().getAsDouble());
+        assertEquals(Integer.MAX_VALUE, Q.from(new int[] { Integer.MAX_VALUE, Integer.MAX_VALUE }).average().getAsDouble());
+        assertEquals(Long.MAX_VALUE, Q.from(new long[] { Long.MAX_VALUE, Long.MAX_VALUE }).average().getAsDouble());
+    }
+
+    @Test
+    public void testProfile() {
+        var received = new ArrayList<OperatorMetrics>();
+        var selector = Q.from(products).profile(received::add).where(e -> e.getId_category() < 3)
+                .orderBy(Product::getName).select(Product::getName);
+        assertEquals(4, selector.toList().size());
+        var metrics = selector.getProfile().getMetrics();
+        assertEquals(received, metrics);
+        assertEquals(Arrays.asList("where", "orderBy", "select"),
+                metrics.stream().map(OperatorMetrics::getOperator).collect(Collectors.toList()));
+        assertEquals(8, metrics.get(0).getRowsIn());
+        assertEquals(4, metrics.get(0).getRowsOut());
+        assertTrue(metrics.get(0).getElapsedNanos() >= 0);
+        assertTrue(selector.explain().contains("where"));
+
+        var lazy = Q.from(products).lazy().profile().where(e -> e.getId_category() < 3).select(Product::getName);
+        lazy.firstOrDefault();
+        var lazyMetrics = lazy.getProfile().getMetrics();
+        assertEquals(3, lazyMetrics.size());
+        assertEquals(1, lazyMetrics.get(0).getRowsOut());
+        assertEquals("firstOrDefault", lazyMetrics.get(2).getOperator());
+
+        var dual = Q.join(products, categories).profile().on(Product::getId_category, Category::getId);
+        dual.select(CategoryProduct::from).toList();
+        assertEquals(5, dual.getProfile().getMetrics().get(0).getRowsOut());
+        assertTrue(dual.explain().contains("on keys"));
+    }
+
+    @Test
+    public void testCompiledQuery() {
+        Function<Product, String> name = Product::getName;
+        var plan = Q.<Product>query().orderBy(name).where(e -> e.getId_category() < 8).where(e -> e.getId() > 1)
+                .orderBy(name).select(Product::getName).compile();
+        var expected = Q.from(products).orderBy(Product::getName).where(e -> e.getId_category() < 8)
+                .where(e -> e.getId() > 1).select(Product::getName).toList();
+        assertEquals(expected, plan.apply(products));
+        assertEquals(expected, plan.apply(products));
+        assertEquals(Arrays.asList("query", "where & where", "orderBy", "select"),
+                Arrays.asList(plan.explain().split(System.lineSeparator() + " -> ")));
+
+        var top = Q.<Product>query().orderByDesc(Product::getId_category).orderBy(Product::getName).take(3)
+                .compile();
+        var sorted = Q.from(products).orderByDesc(Product::getId_category).orderBy(Product::getName).take(3).toList();
+        assertEquals(sorted, top.apply(products));
+        assertTrue(top.explain().contains("top-K"));
+        assertEquals(Arrays.asList(1, 2, 3),
+                Q.<Integer>query().orderBy(x -> x).take(Integer.MAX_VALUE).compile().apply(Arrays.asList(3, 1, 2)));
+        assertEquals(2, Q.<Product>query().distinct(Product::getId_category).compile().from(products)
+                .where(e -> e.getId_category() < 3).toList().size());
+    }
+
+    @Test
+    public void testIndex() {
+        var byCategory = Q.index(products, Product::getId_category);
+        assertEquals("Cat good", byCategory.firstOrDefault(1).getName());
+        assertEquals(2, byCategory.get(2).size());
+        assertTrue(byCategory.contains(3));
+        assertEquals(false, byCategory.contains(4));
+        assertEquals(3, byCategory.whereIn(Arrays.asList(1, 3)).toList().size());
+
+        var byId = Q.index(categories, Category::getId);
+        assertEquals(Q.join(products, categories).on(Product::getId_category, Category::getId).toList(),
+                Q.join(products, categories).on(Product::getId_category, byId).toList());
+
+        var sorted = Q.sortedIndex(products, Product::getId_category);
+        assertEquals(Arrays.asList(3, 5, 4),
+                sorted.between(2, 6).select(Product::getId).toList());
+        assertEquals(6, sorted.floor(6).getId_category());
+        assertEquals(3, sorted.floor(5).getId_category());
+        assertEquals(6, sorted.ceiling(4).getId_category());
+        assertEquals(null, sorted.ceiling(9));
+        assertTrue(sorted.contains(7));
+        assertEquals(2, sorted.where(1).toList().size());
+    }
+
+    @Test
+    public void testGroupByRight() {
+        var join = Q.join(products, categories).on(Product::getId_category, Category::getId);
+        List<Pair<List<Product>, Category>> groups = join.groupByRight(Category::getId).toList();
+        assertEquals(3, groups.size());
+        assertEquals("cat", groups.get(0).getRight().getName());
+        assertEquals(2, groups.get(0).getLeft().size());
+
+        var counts = join.groupByRight(Category::getId, 0, (count, p) -> count + 1).toMap(e -> e.getRight().getName(),
+                Pair::getLeft);
+        assertEquals(Integer.valueOf(2), counts.get("dog"));
+        assertEquals(Integer.valueOf(1), counts.get("bird"));
+
+        var names = Q.join(categories, products).on(Category::getId, Product::getId_category)
+                .groupByLeft(Category::getId, "", (text, p) -> text + p.getName()).toList();
+        assertEquals("dog gooddog gg", names.get(1).getRight());
+    }
+
+    @Test
+    public void testGroupAggregates() {
+        var counts = Q.from(products).groupBy(Product::getId_category).count().toList();
+        assertEquals(6, counts.size());
+        assertEquals(Integer.valueOf(1), counts.get(0).getKey());
+        assertEquals(Long.valueOf(2), counts.get(0).getValue());
+        var sums = Q.from(products).groupBy(Product::getId_category).longSum(Product::getId).toMap(Entry::getKey,
+                Entry::getValue);
+        assertEquals(Long.valueOf(8), sums.get(2));
+        var doubles = Q.from(products).groupBy(Product::getId_category).doubleSum(e -> e.getId() / 2d)
+                .toMap(Entry::getKey, Entry::getValue);
+        assertEquals(Double.valueOf(1.5d), doubles.get(1));
+        var min = Q.from(products).groupBy(Product::getId_category).min(Product::getName).toList();
+        assertEquals("Cat gg ", min.get(0).getValue());
+        var max = Q.from(products).groupBy(Product::getId_category).max(Product::getId).toList();
+        assertEquals(Integer.valueOf(5), max.get(1).getValue());
+        var names = Q.from(products).groupBy(Product::getId_category).aggregate("", (text, p) -> text + p.getId())
+                .toList();
+        assertEquals("35", names.get(1).getValue());
+
+        var numbers = new ArrayList<Integer>();
+        for (int i = 0; i < 20_000; i++) {
+            numbers.add(i);
+        }
+        assertEquals(Q.from(numbers).groupBy(e -> e % 10).count().toList(),
+                Q.from(numbers).parallel(ForkJoinPool.commonPool(), 100).groupBy(e -> e % 10).count().toList());
+        var groups = Q.from(products).groupBy(Product::getId_category).where(e -> e.getValue().size() > 1).toList();
+        assertEquals(2, groups.size());
+    }
+
+    @Test
+    public void testSetOperators() {
+        var a = Arrays.asList(1, 2, 2, 3, 4);
+        var b = Arrays.asList(4, 5, 3, 5);
+        assertEquals(Arrays.asList(1, 2, 3, 4, 5), Q.from(a).union(b).toList());
+        assertEquals(Arrays.asList(3, 4), Q.from(a).intersect(b).toList());
+        assertEquals(Arrays.asList(1, 2), Q.from(a).except(b).toList());
+        assertEquals(Arrays.asList(1), Q.from(a).exceptBy(Arrays.asList(2), e -> e % 2).toList());
+        assertEquals(Arrays.asList(5), Q.from(b).lazy().except(a).toList());
+
+        var withCategory = Q.from(products).whereIn(categories, Product::getId_category, Category::getId).toList();
+        assertEquals(5, withCategory.size());
+        assertEquals("Cat good", withCategory.get(0).getName());
+        var orphans = Q.from(products).whereNotIn(categories, Product::getId_category, Category::getId)
+                .select(Product::getName).toList();
+        assertEquals(Arrays.asList("test", "a", "z"), orphans);
+
+        var numbers = new ArrayList<Integer>();
+        for (int i = 0; i < 20_000; i++) {
+            numbers.add(i % 5000);
+        }
+        var evens = Q.from(numbers).where(e -> e % 2 == 0).toList();
+        assertEquals(Q.from(numbers).except(evens).toList(),
+                Q.from(numbers).parallel(ForkJoinPool.commonPool(), 100).except(evens).toList());
+    }
+
+    @Test
+    public void testOuterJoins() {
+        var left = Q.join(products, categories).leftJoin(Product::getId_category, Category::getId).toList();
+        assertEquals(8, left.size());
+        assertEquals("Cat good", left.get(0).getLeft().getName());
+        assertEquals("cat", left.get(0).getRight().getName());
+        assertNull(left.get(5).getRight());
+
+        var categoriesWithOrphan = new ArrayList<>(categories);
+        categoriesWithOrphan.add(new Category("fish", 4, 0));
+        var right = Q.join(products, categoriesWithOrphan).rightJoin(Product::getId_category, Category::getId)
+                .toList();
+        assertEquals(6, right.size());
+        assertEquals("cat", right.get(0).getRight().getName());
+        assertNull(right.get(5).getLeft());
+        assertEquals("fish", right.get(5).getRight().getName());
+
+        var full = Q.join(products, categoriesWithOrphan).fullJoin(Product::getId_category, Category::getId);
+        assertEquals(9, full.toList().size());
+        assertEquals("fish", full.toList().get(8).getRight().getName());
+        assertEquals(3, full.groupByLeft(Product::getId_category).where(e -> e.getRight().get(0) == null).toList().size());
+
+        var sortedProducts = Q.from(products).orderBy(Product::getId_category).toList();
+        var merged = Q.join(sortedProducts, categories).mergeOn(Product::getId_category, Category::getId).toList();
+        var hashed = Q.join(sortedProducts, categories).on(Product::getId_category, Category::getId).toList();
+        assertEquals(hashed, merged);
+        assertThrows(QException.class,
+                () -> Q.join(products, categories).mergeOn(Product::getId_category, Category::getId));
+    }
+
+    @Test
+    public void testSelectOn() {
+        var expected = Q.join(products, categories).on(Product::getId_category, Category::getId)
+                .select(e -> e.getLeft().getName() + "/" + e.getRight().getName()).toList();
+        var projected = Q.join(products, categories)
+                .selectOn(Product::getId_category, Category::getId, (p, c) -> p.getName() + "/" + c.getName())
+                .toList();
+        assertEquals(expected, projected);
+        assertEquals("Cat good/cat", projected.get(0));
+
+        var reversed = Q.join(categories, products)
+                .selectOn(Category::getId, Product::getId_category, (c, p) -> new CategoryProduct(p.getName(), c.getName()))
+                .toList();
+        assertEquals(5, reversed.size());
+        assertEquals("dog", reversed.get(2).categoryname);
+    }
+
+    @Test
+    public void testSpill() throws IOException {
+        var random = new Random(42);
+        var words = new ArrayList<String>();
+        for (int i = 0; i < 5_000; i++) {
+            words.add("w" + random.nextInt(700));
+        }
+        var directory = Files.createTempDirectory("q-spill-test");
+        var config = new SpillConfig<>(RecordSerializer.strings(), 100).partitions(4).directory(directory);
+
+        assertEquals(Q.from(words).orderBy(String::length).toList(),
+                Q.from(words).spill(config).orderBy(String::length).toList());
+        assertEquals(Q.from(words).orderByDesc(Function.identity()).take(10).toList(),
+                Q.from(words).spill(config).orderByDesc(Function.identity()).take(10).toList());
+        assertEquals(Q.from(words).distinct(Function.identity()).toList(),
+                Q.from(words).spill(config).distinct(Function.identity()).toList());
+        assertEquals(Q.from(words).groupBy(String::length).toList(),
+                Q.from(words).spill(config).groupBy(String::length).toList());
+        assertEquals(Q.from(words).groupBy(Function.identity()).toList(),
+                Q.from(words).spill(config).where(e -> true).groupBy(Function.identity()).toList());
+
+        var small = Arrays.asList("b", "a", "b");
+        assertEquals(Arrays.asList("a", "b", "b"), Q.from(small).spill(config).orderBy(Function.identity()).toList());
+        assertTrue(Q.from(words).spill(config).orderBy(Function.identity()).skip(1).explain().contains("orderBy (spill)"));
+        assertEquals(Q.from(words).orderBy(String::length).firstOrDefault(),
+                Q.from(words).lazy().spill(config).orderBy(String::length).firstOrDefault());
+        assertTrue(Q.from(words).lazy().spill(config).distinct(Function.identity()).any(e -> true));
+        assertEquals(1, Q.from(words).lazy().spill(config).groupBy(Function.identity()).take(1).toList().size());
+        try (var files = Files.list(directory)) {
+            assertEquals(0, files.count());
+        }
+        Files.delete(directory);
+    }
+
+    @Test
+    public void testThenBy() {
+        var sorted = Q.from(products).orderBy(Product::getId_category).thenByDesc(Product::getName).toList();
+        var expected = new ArrayList<>(products);
+        expected.sort(Comparator.comparing(Product::getId_category)
+                .thenComparing(Comparator.comparing(Product::getName).reversed()));
+        assertEquals(expected, sorted);
+        assertEquals("dog good", sorted.get(2).getName());
+
+        var random = new Random(7);
+        var rows = new ArrayList<long[]>();
+        for (int i = 0; i < 20_000; i++) {
+            rows.add(new long[] { random.nextInt(10), random.nextInt(100), i });
+        }
+        var calls = new AtomicInteger();
+        var keyed = Q.from(rows).orderByDesc(e -> {
+            calls.incrementAndGet();
+            return e[0];
+        }).thenBy(e -> (double) e[1]).thenBy(e -> "k" + e[1] % 3, Comparator.reverseOrder()).toList();
+        assertEquals(20_000, calls.get());
+        var reference = new ArrayList<>(rows);
+        reference.sort(Comparator.<long[], Long>comparing(e -> e[0]).reversed()
+                .thenComparing(e -> (double) e[1]).thenComparing(e -> "k" + e[1] % 3, Comparator.reverseOrder()));
+        assertEquals(reference, keyed);
+        assertEquals(reference, Q.from(rows).parallel(ForkJoinPool.commonPool(), 100).orderByDesc(e -> e[0])
+                .thenBy(e -> (double) e[1]).thenBy(e -> "k" + e[1] % 3, Comparator.reverseOrder()).toList());
+        assertEquals(reference.subList(0, 5), Q.from(rows).orderByDesc(e -> e[0]).thenBy(e -> (double) e[1])
+                .thenBy(e -> "k" + e[1] % 3, Comparator.reverseOrder()).take(5).toList());
+
+        assertThrows(QException.class, () -> Q.from(products).thenBy(Product::getName));
+    }
+
+    @Test
+    public void testSortedLookups() {
+        Function<Product, Integer> byId = Product::getId;
+        var sorted = Q.from(products).orderByDesc(Product::getName).orderBy(byId);
+        assertEquals(Arrays.asList(3, 4, 5), sorted.between(3, 7).select(Product::getId).toList());
+        assertEquals(2, sorted.lowerBound(3));
+        assertEquals(6, sorted.upperBound(7));
+        assertEquals("dog gg", sorted.floor(6).getName());
+        assertEquals("test", sorted.ceiling(6).getName());
+        assertNull(sorted.floor(0));
+        assertNull(sorted.ceiling(10));
+
+        var calls = new AtomicInteger();
+        Function<Product, Integer> counted = p -> {
+            calls.incrementAndGet();
+            return p.getId();
+        };
+        var twice = Q.from(products).orderBy(counted).where(p -> p.getId() > 1).orderBy(counted);
+        assertEquals(products.size(), calls.get());
+        assertTrue(twice.explain().contains("orderBy (already sorted)"));
+        assertEquals("z", twice.orderByDesc(counted).between(100, 8).firstOrDefault().getName());
+
+        var descending = Q.from(products).orderByDesc(Product::getId_category);
+        assertEquals(Arrays.asList(3, 2, 2), descending.between(3, 1).select(Product::getId_category).toList());
+        assertThrows(QException.class, () -> Q.from(products).between(1, 2));
+        assertThrows(QException.class, () -> Q.from(products).orderBy(byId).concat(products).floor(1));
+    }
+
+    @Test
+    public void testRepeatedOrderBy() {
+        Function<Product, String> byName = Product::getName;
+        Function<Product, Integer> byId = Product::getId;
+        var reference = new ArrayList<>(products);
+        reference.sort(Comparator.comparing(byName).thenComparing(byId, Comparator.reverseOrder()));
+        assertEquals(reference, Q.from(products).orderBy(byName).where(p -> true).orderBy(byName).thenByDesc(byId).toList());
+
+        Function<Product, Integer> byCategory = Product::getId_category;
+        Function<Product, Integer> byLength = p -> p.getName().length();
+        reference.sort(Comparator.comparing(byCategory).thenComparing(byLength).thenComparing(byId));
+        assertEquals(reference, Q.from(products).orderBy(byCategory).thenBy(byId).orderBy(byCategory).thenBy(byLength).toList());
+    }
+
+    @Test
+    public void testSelectAsync() {
+        var numbers = new ArrayList<Integer>();
+        for (int i = 0; i < 200; i++) {
+            numbers.add(i);
+        }
+        var inFlight = new AtomicInteger();
+        var peak = new AtomicInteger();
+        var doubled = Q.from(numbers).selectAsync(e -> {
+            peak.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            inFlight.decrementAndGet();
+            return e * 2;
+        }, 8).toList();
+        assertEquals(Q.from(numbers).select(e -> e * 2).toList(), doubled);
+        assertTrue(peak.get() <= 8);
+
+        var pool = Executors.newFixedThreadPool(4);
+        try {
+            var sum = new AtomicInteger();
+            Q.from(numbers).lazy().where(e -> e % 2 == 0).foreachAsync(sum::addAndGet, 4, pool);
+            assertEquals(9900, sum.get());
+
+            var started = new AtomicInteger();
+            var failure = assertThrows(IllegalStateException.class, () -> Q.from(numbers).selectAsync(e -> {
+                started.incrementAndGet();
+                if (e == 10)
+                    throw new IllegalStateException("row " + e);
+                return e;
+            }, 2, pool));
+            assertEquals("row 10", failure.getMessage());
+            assertTrue(started.get() < numbers.size());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testChunk() {
+        var chunks = Q.from(products).chunk(3).toList();
+        assertEquals(3, chunks.size());
+        assertEquals(Arrays.asList(3, 3, 2), Q.from(chunks).select(List::size).toList());
+        assertEquals(products.subList(3, 6), chunks.get(1));
+
+        var pulled = new AtomicInteger();
+        var numbers = Stream.iterate(0, e -> e + 1).limit(10_000).peek(e -> pulled.incrementAndGet());
+        var batches = new ArrayList<Integer>();
+        var maxAhead = new AtomicInteger();
+        var consumed = new AtomicInteger();
+        Q.from(numbers).foreachBatch(100, batch -> {
+            consumed.addAndGet(batch.size());
+            maxAhead.accumulateAndGet(pulled.get() - consumed.get(), Math::max);
+            batches.add(batch.size());
+        });
+        assertEquals(100, batches.size());
+        assertEquals(0, maxAhead.get());
+
+        var timed = new ArrayList<List<Integer>>();
+        Q.from(Arrays.asList(1, 2, 3, 4, 5)).lazy().where(e -> {
+            if (e == 3) {
+                try {
+                    Thread.sleep(30);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return true;
+        }).foreachBatch(10, Duration.ofMillis(10), timed::add);
+        assertEquals(Arrays.asList(Arrays.asList(1, 2, 3), Arrays.asList(4, 5)), timed);
+        assertThrows(QException.class, () -> Q.from(products).foreachBatch(0, b -> {
+        }));
+    }
+
+    @Test
+    public void testFlow() throws InterruptedException {
+        var emitted = new AtomicInteger();
+        Flow.Publisher<Integer> range = subscriber -> subscriber.onSubscribe(new Flow.Subscription() {
+            private int next;
+
+            @Override
+            public void request(long n) {
+                for (long i = 0; i < n && next < 1000; i++) {
+                    emitted.incrementAndGet();
+                    subscriber.onNext(next++);
+                }
+                if (next == 1000)
+                    subscriber.onComplete();
+            }
+
+            @Override
+            public void cancel() {
+                next = 1000;
+            }
+        });
+
+        var received = new ArrayList<List<String>>();
+        Q.from(range).where(e -> e % 2 == 0).select(e -> "n" + e % 10).chunk(3).toPublisher()
+                .subscribe(new Flow.Subscriber<List<String>>() {
+                    @Override
+                    public void onSubscribe(Flow.Subscription subscription) {
+                        subscription.request(2);
+                    }
+
+                    @Override
+                    public void onNext(List<String> item) {
+                        received.add(item);
+                    }
+
+                    @Override
+                    public void onError(Throwable throwable) {
+                    }
+
+                    @Override
+                    public void onComplete() {
+                    }
+                });
+        assertEquals(2, received.size());
+        assertEquals(Arrays.asList("n0", "n2", "n4"), received.get(0));
+        assertEquals(11, emitted.get());
+
+        var publisher = new SubmissionPublisher<Integer>();
+        var distinct = new ArrayList<Integer>();
+        var done = new CountDownLatch(1);
+        Q.from(publisher).distinct(e -> e % 7, 3).chunk(4).toPublisher().subscribe(new Flow.Subscriber<List<Integer>>() {
+            private Flow.Subscription subscription;
+
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                this.subscription = subscription;
+                subscription.request(1);
+            }
+
+            @Override
+            public void onNext(List<Integer> item) {
+                distinct.addAll(item);
+                subscription.request(1);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                done.countDown();
+            }
+
+            @Override
+            public void onComplete() {
+                done.countDown();
+            }
+        });
+        for (int i : new int[] { 1, 8, 2, 9, 3, 4, 5, 1, 4 }) {
+            publisher.submit(i);
+        }
+        publisher.close();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList(1, 2, 3, 4, 5, 1), distinct);
+    }
+
+    @Test
+    public void testStarJoin() {
+        var names = Arrays.asList(Pair.of(1, "one"), Pair.of(3, "three"), Pair.of(3, "drei"), Pair.of(5, "five"));
+        var star = Q.star(products);
+        var category = star.dim(categories, Product::getId_category, Category::getId);
+        var name = star.dim(names, Product::getId, Pair::getLeft);
+        var joined = star.select(row -> row.fact().getId() + ":" + row.get(category).getName() + ":"
+                + row.get(name).getRight()).toList();
+        assertEquals(Arrays.asList("1:cat:one", "3:dog:three", "3:dog:drei", "5:dog:five"), joined);
+
+        var chained = Q.join(products, categories).on(Product::getId_category, Category::getId)
+                .select(e -> e.getLeft().getId() + ":" + e.getRight().getName()).toList();
+        var optional = Q.star(products);
+        var maybeCategory = optional.optionalDim(categories, Product::getId_category, Category::getId);
+        var rows = optional.rows().toList();
+        assertEquals(products.size(), rows.size());
+        assertNull(rows.get(5).get(maybeCategory));
+        assertEquals(chained, Q.from(rows).where(r -> r.get(maybeCategory) != null)
+                .select(r -> r.fact().getId() + ":" + r.get(maybeCategory).getName()).toList());
+        assertThrows(QException.class, () -> rows.get(0).get(category));
+    }
+
+    @Test
+    public void testParallelJoin() {
+        var random = new Random(3);
+        var left = new ArrayList<Integer>();
+        var right = new ArrayList<Integer>();
+        for (int i = 0; i < 20_000; i++) {
+            left.add(random.nextInt(5_000));
+            right.add(random.nextInt(5_000));
+        }
+        var sequential = Q.join(left, right).on(e -> e, e -> e, (a, b) -> a % 3 != 0).toList();
+        var ordered = Q.join(left, right).parallel(ForkJoinPool.commonPool(), 1000).on(e -> e, e -> e,
+                (a, b) -> a % 3 != 0);
+        assertEquals(sequential, ordered.toList());
+        assertTrue(ordered.explain().contains("on keys (parallel)"));
+
+        var unordered = Q.join(left, right).parallel(ForkJoinPool.commonPool(), 1000).unordered()
+                .on(e -> e, e -> e, (a, b) -> a % 3 != 0).toList();
+        var comparator = Comparator.<Pair<Integer, Integer>, Integer>comparing(Pair::getLeft);
+        var expected = new ArrayList<>(sequential);
+        expected.sort(comparator);
+        var actual = new ArrayList<>(unordered);
+        actual.sort(comparator);
+        assertEquals(expected, actual);
+
+        var small = Q.join(products, categories).parallel().on(Product::getId_category, Category::getId);
+        assertTrue(small.explain().endsWith("on keys"));
+    }
+
+    @Test
+    public void testColumns() {
+        var frame = Q.columns(products).intCol("category", Product::getId_category).longCol("id", Product::getId)
+                .doubleCol("half", p -> p.getId() / 2d);
+        assertEquals(8, frame.count());
+        assertEquals(39, frame.sumLong("id"));
+        assertEquals(Map.of(1, 2L, 2, 2L, 3, 1L, 6, 1L, 7, 1L, 8, 1L), frame.countBy("category"));
+        assertEquals(Arrays.asList(1, 2, 3, 6, 7, 8), new ArrayList<>(frame.countBy("category").keySet()));
+
+        var filtered = frame.whereInt("category", c -> c <= 3).whereDouble("half", h -> h >= 1);
+        assertEquals(8, frame.count());
+        assertEquals(4, filtered.count());
+        assertEquals(Arrays.asList("Cat gg ", "dog good", "bird gg", "dog gg"),
+                filtered.rows().select(Product::getName).toList());
+        assertEquals(2, filtered.minLong("id").getAsLong());
+        assertEquals(5, filtered.maxLong("id").getAsLong());
+        assertEquals(3, filtered.maxInt("category").getAsInt());
+        assertEquals(7, filtered.sumDouble("half"));
+        assertEquals(Double.valueOf(8), filtered.sumBy("category", "id").get(2));
+        assertEquals(Double.valueOf(2.5), filtered.maxBy("category", "half").get(2));
+        assertEquals(Double.valueOf(1.5), filtered.minBy("category", "half").get(2));
+        assertArrayEquals(new int[] { 1, 2, 3, 4 }, filtered.positions());
+        assertEquals(8, filtered.selectInt("category").sum());
+
+        var none = filtered.whereLong("id", id -> id > 100);
+        assertEquals(0, none.count());
+        assertTrue(none.minDouble("half").isEmpty());
+        assertEquals(4, filtered.count());
+        assertEquals(1, filtered.intCol("twice", p -> p.getId() * 2).whereInt("twice", t -> t > 8).count());
+        assertEquals(78, frame.sumInt("twice"));
+        assertThrows(QException.class, () -> frame.sumInt("id"));
+    }
+
+    @Test
+    public void testWriteTo() throws IOException {
+        var file = Files.createTempFile("q-sink", ".csv");
+        try {
+            var csv = new CsvFormatter<Product>().column("id", Product::getId).column("name", Product::getName);
+            var quoted = Arrays.asList(new Product("a,b", 1, 10), new Product("say \"hi\"", 1, 11),
+                    new Product(null, 1, 12));
+            long bytes = Q.from(quoted).writeTo(file, csv);
+            var text = Files.readString(file);
+            assertEquals("id,name\r\n10,\"a,b\"\r\n11,\"say \"\"hi\"\"\"\r\n12,\r\n", text);
+            assertEquals(text.length(), bytes);
+
+            var json = new JsonLinesFormatter<Product>().field("id", Product::getId).field("name", Product::getName)
+                    .field("ratio", p -> p.getId() / 0d);
+            var out = new ByteArrayOutputStream();
+            Q.from(Arrays.asList(new Product("été\n\"x\"", 1, 1))).writeTo(Channels.newChannel(out), json);
+            assertEquals("{\"id\":1,\"name\":\"été\\n\\\"x\\\"\",\"ratio\":null}\n", out.toString(StandardCharsets.UTF_8));
+
+            var many = Stream.iterate(0, e -> e + 1).limit(50_000).map(e -> new Product("product " + e, e % 10, e));
+            Q.from(many).writeTo(file, csv.withoutHeader());
+            try (var lines = Files.lines(file)) {
+                assertEquals(50_000, lines.count());
+            }
+            assertTrue(Files.readAllLines(file).get(49_999).equals("49999,product 49999"));
+        } finally {
+            Files.delete(file);
+        }
+    }
+}